@@ -0,0 +1,104 @@
+package puzzle;
+
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * A* ponderado en modo "anytime": se lanza una serie de A* con f = g + w·h y
+ * pesos cada vez menores. Con un peso alto la primera solución llega enseguida
+ * (a costa de no ser óptima, aunque nunca es más de w veces más larga); cada
+ * plan mejor que el anterior se entrega al receptor en cuanto se encuentra y
+ * su longitud sirve para podar las búsquedas siguientes: no se genera ningún
+ * nodo con g + h mayor o igual que ella. La última pasada, con w = 1, es A*
+ * normal y demuestra que el plan es óptimo.
+ *
+ * Los pesos se expresan en décimas para que la prioridad siga siendo un entero
+ * (10·g + peso·h) y se pueda usar la cola de cubetas.
+ */
+class AnytimeAStar {
+
+    /**
+     * Pesos de las pasadas, en décimas
+     */
+    static final int[] PESOS = {50, 30, 20, 15, 12, 11, 10};
+
+    private final NPuzzle origen;
+    private final Deadline plazo;
+    private final SearchStats estadisticas;
+    private final Consumer<ArrayList<Integer>> receptor;
+    private ArrayList<Integer> mejor;
+
+    AnytimeAStar(NPuzzle origen, Deadline plazo, SearchStats estadisticas, Consumer<ArrayList<Integer>> receptor) {
+        this.origen = origen;
+        this.plazo = plazo;
+        this.estadisticas = estadisticas;
+        this.receptor = receptor;
+    }
+
+    /**
+     * @return el mejor plan encontrado antes de que venza el plazo, vacío si no
+     * se ha encontrado ninguno
+     */
+    ArrayList<Integer> resuelve() {
+        for (int peso : PESOS) {
+            if (!pasada(peso)) {
+                this.estadisticas.interrumpida = true;
+                break;
+            }
+            //un plan tan corto como la heurística del origen ya es óptimo
+            if (this.mejor != null && this.mejor.size() == this.origen.h) break;
+        }
+        return this.mejor != null ? this.mejor : new ArrayList<>();
+    }
+
+    /**
+     * Una búsqueda A* ponderada, podada por el mejor plan conocido
+     *
+     * @param peso peso de h en décimas
+     * @return false si se ha acabado el plazo
+     */
+    private boolean pasada(int peso) {
+        BucketQueue abiertos = new BucketQueue();
+        Memory memoria = new Memory();
+        int cota = this.mejor != null ? this.mejor.size() : Integer.MAX_VALUE;
+        int g0 = this.origen.g;
+        long vueltas = 0;
+
+        abiertos.push(this.origen, peso * this.origen.h);
+        NPuzzle current;
+        while ((current = abiertos.poll()) != null) {
+            if (this.plazo.comprueba(++vueltas)) return false;
+
+            //se cierra al expandirlo, como en busquedaPrimeroMejorA
+            if (memoria.isViewed(current)) {
+                this.estadisticas.duplicados++;
+                continue;
+            }
+            if (current.h == 0 && current.objetivo()) {
+                this.mejor = this.origen.plan(memoria, current);
+                if (this.receptor != null) this.receptor.accept(new ArrayList<>(this.mejor));
+                return true;
+            }
+
+            this.estadisticas.expandidos++;
+            //en la raíz no hay movimiento prohibido
+            int prohibido = current == this.origen ? 0 : current.padre;
+            for (int movimiento = NPuzzle.ARRIBA; movimiento <= NPuzzle.IZQUIERDA; movimiento++) {
+                if (movimiento == prohibido || !current.puedeMover(movimiento)) continue;
+                NPuzzle hijo = current.copiaYMueveInseguro(movimiento);
+                this.estadisticas.generados++;
+                this.estadisticas.evaluaciones++;
+                //no puede mejorar el plan que ya tenemos
+                int g = hijo.g - g0;
+                if (g + hijo.h >= cota) continue;
+                if (memoria.contains(hijo)) {
+                    this.estadisticas.duplicados++;
+                    continue;
+                }
+                abiertos.push(hijo, 10 * g + peso * hijo.h);
+            }
+            this.estadisticas.abiertos(abiertos.size());
+        }
+        return true;
+    }
+}
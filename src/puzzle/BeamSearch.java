@@ -0,0 +1,188 @@
+package puzzle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Búsqueda en haz: cada nivel guarda sólo los k mejores hijos (por h) del
+ * nivel anterior que no se hayan visto antes. Los hijos de un nivel se generan
+ * y evalúan en paralelo en un ForkJoinPool; la selección es secuencial y
+ * desempata por el orden de generación, así que el resultado no depende del
+ * número de hilos. La memoria de visitados sólo guarda los tableros elegidos y
+ * de cada nivel sólo se guarda, para reconstruir el plan, el índice del padre y
+ * el movimiento de cada elegido, así que la memoria es del orden de k·nivel.
+ *
+ * No es óptima ni completa: el haz puede quedarse vacío si todos los hijos ya
+ * se habían visto. Con k = 1 sigue por el mejor hijo aunque empeore; en modo
+ * escalada sólo se aceptan hijos que no empeoran la h de su padre, así que se
+ * para (sin plan) en el primer mínimo local.
+ */
+class BeamSearch {
+
+    /**
+     * Padres que evalúa cada tarea sin repartirlos más
+     */
+    private static final int UMBRAL = 64;
+
+    private final NPuzzle origen;
+    private final int anchura;
+    private final ForkJoinPool pool;
+    private final Deadline plazo;
+    private final SearchStats estadisticas;
+    private final boolean escalada;
+
+    /**
+     * Índice en el nivel anterior del padre de cada elegido, por nivel
+     */
+    private final ArrayList<int[]> padres = new ArrayList<>();
+
+    /**
+     * Movimiento que lleva a cada elegido, por nivel
+     */
+    private final ArrayList<byte[]> movimientos = new ArrayList<>();
+
+    /**
+     * @param anchura número de tableros de cada nivel (k)
+     */
+    BeamSearch(NPuzzle origen, int anchura, ForkJoinPool pool, Deadline plazo, SearchStats estadisticas) {
+        this(origen, anchura, pool, plazo, estadisticas, false);
+    }
+
+    /**
+     * @param anchura  número de tableros de cada nivel (k)
+     * @param escalada si sólo se aceptan hijos con h no mayor que la del padre
+     */
+    BeamSearch(NPuzzle origen, int anchura, ForkJoinPool pool, Deadline plazo, SearchStats estadisticas,
+               boolean escalada) {
+        if (anchura < 1) throw new RuntimeException("La anchura del haz debe ser al menos 1");
+        this.origen = new NPuzzle(origen);
+        this.anchura = anchura;
+        this.pool = pool;
+        this.plazo = plazo;
+        this.estadisticas = estadisticas;
+        this.escalada = escalada;
+    }
+
+    /**
+     * @return el plan encontrado, vacío si el haz se ha quedado sin tableros,
+     * ha vencido el plazo o el origen ya era el objetivo
+     */
+    ArrayList<Integer> resuelve() {
+        if (this.origen.objetivo()) return new ArrayList<>();
+        Memory vistos = new Memory(this.anchura * 16);
+        vistos.isViewed(this.origen);
+        NPuzzle[] haz = {this.origen};
+
+        while (haz.length > 0) {
+            if (this.plazo.vencido()) {
+                this.estadisticas.interrumpida = true;
+                return new ArrayList<>();
+            }
+
+            //hijos de cada tablero del haz, en la posición 4·i + j
+            NPuzzle[] hijos = new NPuzzle[haz.length * 4];
+            //en el primer nivel sólo está el origen, que no tiene movimiento prohibido
+            boolean raiz = this.padres.isEmpty();
+            if (haz.length <= UMBRAL) new Expande(haz, hijos, 0, haz.length, raiz).compute();
+            else this.pool.invoke(new Expande(haz, hijos, 0, haz.length, raiz));
+
+            ArrayList<Integer> candidatos = new ArrayList<>(hijos.length);
+            for (int i = 0; i < hijos.length; i++)
+                if (hijos[i] != null) candidatos.add(i);
+            this.estadisticas.expandidos += haz.length;
+            this.estadisticas.generados += candidatos.size();
+            this.estadisticas.evaluaciones += candidatos.size();
+            //ordenación estable: a igual h, el orden de generación
+            Collections.sort(candidatos, Comparator.comparingInt(i -> hijos[i].h));
+
+            int nivel = this.padres.size();
+            int[] padresNivel = new int[Math.min(this.anchura, candidatos.size())];
+            byte[] movimientosNivel = new byte[padresNivel.length];
+            NPuzzle[] siguiente = new NPuzzle[padresNivel.length];
+            int tam = 0;
+            for (int i : candidatos) {
+                if (tam == siguiente.length) break;
+                NPuzzle hijo = hijos[i];
+                if (this.escalada && hijo.h > haz[i >> 2].h) continue;
+                if (vistos.isViewed(hijo)) {
+                    this.estadisticas.duplicados++;
+                    continue;
+                }
+                padresNivel[tam] = i >> 2;
+                movimientosNivel[tam] = (byte) haz[i >> 2].inverso(hijo.padre);
+                siguiente[tam] = hijo;
+                if (hijo.h == 0 && hijo.objetivo()) {
+                    this.padres.add(padresNivel);
+                    this.movimientos.add(movimientosNivel);
+                    return plan(nivel, tam);
+                }
+                tam++;
+            }
+            this.padres.add(Arrays.copyOf(padresNivel, tam));
+            this.movimientos.add(Arrays.copyOf(movimientosNivel, tam));
+            haz = Arrays.copyOf(siguiente, tam);
+            this.estadisticas.abiertos(tam);
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Sigue los índices de los padres desde un elegido hasta el origen
+     */
+    private ArrayList<Integer> plan(int nivel, int indice) {
+        ArrayList<Integer> pasos = new ArrayList<>(nivel + 1);
+        for (int d = nivel; d >= 0; d--) {
+            pasos.add((int) this.movimientos.get(d)[indice]);
+            indice = this.padres.get(d)[indice];
+        }
+        Collections.reverse(pasos);
+        return pasos;
+    }
+
+    /**
+     * Genera los hijos de un tramo del haz, repartiéndolo en mitades mientras
+     * sea más grande que UMBRAL
+     */
+    private static final class Expande extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final NPuzzle[] haz;
+        private final NPuzzle[] hijos;
+        private final int desde;
+        private final int hasta;
+        private final boolean raiz;
+
+        /**
+         * @param raiz si el haz es el primer nivel (sin movimiento prohibido)
+         */
+        Expande(NPuzzle[] haz, NPuzzle[] hijos, int desde, int hasta, boolean raiz) {
+            this.haz = haz;
+            this.hijos = hijos;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.raiz = raiz;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.hasta - this.desde > UMBRAL) {
+                int medio = (this.desde + this.hasta) >>> 1;
+                invokeAll(new Expande(this.haz, this.hijos, this.desde, medio, this.raiz),
+                        new Expande(this.haz, this.hijos, medio, this.hasta, this.raiz));
+                return;
+            }
+            for (int i = this.desde; i < this.hasta; i++) {
+                NPuzzle tablero = this.haz[i];
+                int j = 0;
+                for (int movimiento : tablero.movimientosPosibles()) {
+                    if (!this.raiz && movimiento == tablero.padre) continue;
+                    this.hijos[4 * i + j++] = tablero.copiaYMueveInseguro(movimiento);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package puzzle;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Pruebas de rendimiento de las operaciones básicas y de cada búsqueda sobre
+ * un conjunto fijo de puzzles generado con semilla, para que todas las
+ * ejecuciones midan lo mismo. Para cada prueba se hace un calentamiento y
+ * después se mide durante un tiempo fijo, mostrando operaciones por segundo y
+ * bytes reservados por operación (lo que da la tasa de reserva de memoria).
+ *
+ * Uso: java puzzle.Benchmark [segundos por prueba] [filtro]
+ */
+public class Benchmark {
+
+    /**
+     * Semilla del conjunto de puzzles
+     */
+    static final long SEMILLA = 20161025L;
+
+    /**
+     * Una operación a medir. Devuelve un valor que se acumula para que el JIT no
+     * pueda eliminar el trabajo.
+     */
+    interface Operacion {
+        long ejecuta(int i);
+    }
+
+    private static volatile long sumidero;
+    private static final PrintStream salidaReal = System.out;
+    private static final PrintStream salidaNula = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+    });
+
+    public static void main(String[] args) {
+        double segundos = args.length > 0 ? Double.parseDouble(args[0]) : 2;
+        String filtro = args.length > 1 ? args[1] : "";
+
+        NPuzzle[] corpus8 = corpus(8, 64, 22);
+        NPuzzle[] corpus15 = corpus(15, 64, 40);
+        NPuzzle[] busquedas15 = corpus(15, 16, 30);
+        long[] claves15 = claves(corpus15, 4096);
+
+        System.out.printf("%-40s %14s %12s %10s%n", "prueba", "ops/s", "bytes/op", "MB/s");
+        for (NPuzzle[] corpus : new NPuzzle[][]{corpus8, corpus15}) {
+            String t = corpus[0].n + "-puzzle ";
+            mide(t + "copiaYMueveInseguro", segundos, filtro, i -> {
+                NPuzzle p = corpus[i & (corpus.length - 1)];
+                return p.copiaYMueveInseguro(p.movimientosPosibles()[0]).h;
+            });
+            mide(t + "heuristica", segundos, filtro, i -> corpus[i & (corpus.length - 1)].heuristica());
+            mide(t + "heuristica2", segundos, filtro, i -> corpus[i & (corpus.length - 1)].heuristica2());
+            mide(t + "posiblesMovimientos", segundos, filtro,
+                    i -> corpus[i & (corpus.length - 1)].posiblesMovimientos().size());
+            mide(t + "movimientosPosibles", segundos, filtro,
+                    i -> corpus[i & (corpus.length - 1)].movimientosPosibles().length);
+        }
+        mide("15-puzzle Memory.isViewed (4096 claves)", segundos, filtro, i -> {
+            Memory memoria = new Memory();
+            long vistos = 0;
+            for (long clave : claves15)
+                if (memoria.isViewed(clave, 0)) vistos++;
+            return vistos;
+        });
+
+        mide("8-puzzle busquedaPrimeroAnchura", segundos, filtro,
+                i -> new NPuzzle(corpus8[i & 63]).busquedaPrimeroAnchura().size());
+        mide("8-puzzle busquedaPrimeroProfundidad", segundos, filtro,
+                i -> new NPuzzle(corpus8[i & 63]).busquedaPrimeroProfundidad().size());
+        mide("8-puzzle busquedaProfundidadIterativa", segundos, filtro,
+                i -> new NPuzzle(corpus8[i & 63]).busquedaProfundidadIterativa().size());
+        mide("8-puzzle escaladaSimple", segundos, filtro,
+                i -> new NPuzzle(corpus8[i & 63]).escaladaSimple().size());
+        mide("8-puzzle busquedaPrimeroMejorA", segundos, filtro,
+                i -> new NPuzzle(corpus8[i & 63]).busquedaPrimeroMejorA().size());
+        mide("8-puzzle busquedaIDA", segundos, filtro,
+                i -> new NPuzzle(corpus8[i & 63]).busquedaIDA().size());
+        mide("15-puzzle busquedaPrimeroMejorA", segundos, filtro,
+                i -> new NPuzzle(busquedas15[i & 15]).busquedaPrimeroMejorA().size());
+        mide("15-puzzle busquedaIDA", segundos, filtro,
+                i -> new NPuzzle(busquedas15[i & 15]).busquedaIDA().size());
+        mide("15-puzzle busquedaPrimeroMejorAcotada", segundos, filtro,
+                i -> new NPuzzle(busquedas15[i & 15]).busquedaPrimeroMejorAcotada(100000).size());
+    }
+
+    /*---------------------------------------------------------------------------*/
+
+    /**
+     * Conjunto fijo de puzzles resolubles: paseos aleatorios con semilla desde
+     * el objetivo, sin deshacer el último movimiento (Workload.paseos).
+     *
+     * @param n        tamaño del problema
+     * @param cantidad número de puzzles
+     * @param pasos    longitud de cada paseo
+     * @return los puzzles, con g=0 y sin padre
+     */
+    static NPuzzle[] corpus(int n, int cantidad, int pasos) {
+        return Workload.paseos(n, cantidad, pasos, SEMILLA + n);
+    }
+
+    /**
+     * Claves de los tableros que salen al recorrer el corpus con movimientos
+     * aleatorios, con repeticiones
+     */
+    private static long[] claves(NPuzzle[] corpus, int cantidad) {
+        Random random = new Random(SEMILLA);
+        long[] claves = new long[cantidad];
+        NPuzzle p = new NPuzzle(corpus[0]);
+        for (int i = 0; i < cantidad; i++) {
+            ArrayList<Integer> posibles = p.posiblesMovimientos();
+            p.mueveInseguro(posibles.get(random.nextInt(posibles.size())));
+            claves[i] = p.clave();
+        }
+        return claves;
+    }
+
+    /*---------------------------------------------------------------------------*/
+
+    /**
+     * Calienta y mide una operación durante el tiempo indicado, mostrando
+     * operaciones por segundo y memoria reservada.
+     */
+    private static void mide(String nombre, double segundos, String filtro, Operacion operacion) {
+        if (!nombre.contains(filtro)) return;
+        //las búsquedas escriben por pantalla: se descarta durante la medida
+        System.setOut(salidaNula);
+        ejecuta(operacion, segundos / 2);
+        long bytes = bytesReservados();
+        long inicio = System.nanoTime();
+        long ops = ejecuta(operacion, segundos);
+        long nanos = System.nanoTime() - inicio;
+        bytes = bytesReservados() - bytes;
+        System.setOut(salidaReal);
+
+        double opsPorSegundo = ops * 1e9 / nanos;
+        System.out.printf("%-40s %14.1f %12.1f %10.1f%n", nombre, opsPorSegundo,
+                (double) bytes / ops, bytes * 1e3 / nanos);
+    }
+
+    private static long ejecuta(Operacion operacion, double segundos) {
+        long fin = System.nanoTime() + (long) (segundos * 1e9);
+        long suma = 0;
+        int i = 0;
+        do {
+            //se comprueba el reloj cada 16 operaciones
+            for (int j = 0; j < 16; j++, i++)
+                suma += operacion.ejecuta(i);
+        } while (System.nanoTime() < fin);
+        sumidero += suma;
+        return i;
+    }
+
+    private static long bytesReservados() {
+        java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        if (mx instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return 0;
+    }
+}
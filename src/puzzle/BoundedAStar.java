@@ -0,0 +1,202 @@
+package puzzle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/**
+ * A* con memoria acotada (SMA*). Nunca hay más de maxNodos nodos en memoria:
+ * cuando no caben los hijos del nodo a expandir se olvida la hoja con mayor f
+ * (la menos profunda si hay empate) y su f se guarda en el padre, que vuelve a
+ * abiertos con ese valor para regenerar el hijo si llega a ser el mejor. Los
+ * valores f se propagan con pathmax, así que el menor de abiertos sigue siendo
+ * una cota inferior del coste óptimo y la primera solución que se selecciona
+ * es óptima, siempre que su camino quepa en la memoria.
+ *
+ * Es una búsqueda en árbol, como IDA*: sólo se evita volver al padre.
+ */
+class BoundedAStar {
+
+    /**
+     * Memoria aproximada de un nodo: el propio nodo, su tablero y la entrada
+     * del conjunto de abiertos
+     */
+    static final int BYTES_POR_NODO = 160;
+
+    /**
+     * f de los nodos cuya solución no cabe en la memoria
+     */
+    private static final int INFINITO = Integer.MAX_VALUE;
+
+    private static final class Nodo {
+        final NPuzzle estado;
+        final Nodo padre;
+        final int g;
+        final int movimiento;
+        final long orden;
+        /**
+         * Cota inferior del coste de las soluciones que pasan por el nodo
+         */
+        int f;
+        /**
+         * Movimientos cuyos hijos están en memoria (un bit por movimiento) y
+         * menor f de los hijos olvidados
+         */
+        int hijos;
+        int olvidado = INFINITO;
+
+        Nodo(NPuzzle estado, Nodo padre, int g, int f, int movimiento, long orden) {
+            this.estado = estado;
+            this.padre = padre;
+            this.g = g;
+            this.f = f;
+            this.movimiento = movimiento;
+            this.orden = orden;
+        }
+
+        /**
+         * Valor en abiertos: una hoja vale su f y un nodo con hijos olvidados el
+         * menor f de éstos
+         */
+        int clave() {
+            return this.hijos == 0 ? this.f : this.olvidado;
+        }
+
+        boolean enAbiertos() {
+            return this.hijos == 0 || this.olvidado != INFINITO;
+        }
+    }
+
+    private final int maxNodos;
+    private final Deadline plazo;
+
+    /**
+     * Nodos con hijos por generar (las hojas y los que tienen hijos olvidados)
+     * ordenados por clave, después los más profundos y los más nuevos: el
+     * primero es el siguiente a expandir. Las hojas se olvidan empezando por
+     * el final. La clave de un nodo sólo se cambia fuera del conjunto.
+     */
+    private final TreeSet<Nodo> abiertos = new TreeSet<>((a, b) -> {
+        if (a.clave() != b.clave()) return Integer.compare(a.clave(), b.clave());
+        if (a.g != b.g) return Integer.compare(b.g, a.g);
+        return Long.compare(b.orden, a.orden);
+    });
+    private final SearchStats estadisticas;
+    private int enMemoria;
+    private long creados;
+    private long olvidados;
+
+    BoundedAStar(int maxNodos, SearchStats estadisticas, Deadline plazo) {
+        if (maxNodos < 6)
+            throw new RuntimeException("Hacen falta al menos 6 nodos de memoria");
+        this.maxNodos = maxNodos;
+        this.estadisticas = estadisticas;
+        this.plazo = plazo;
+    }
+
+    /**
+     * Número de nodos que caben en una cantidad de memoria
+     */
+    static int nodosPara(long bytes) {
+        return (int) Math.min(Integer.MAX_VALUE, bytes / BYTES_POR_NODO);
+    }
+
+    ArrayList<Integer> resuelve(NPuzzle origen) {
+        ArrayList<Integer> pasos = new ArrayList<>();
+        //la raíz no tiene movimiento (ni, por tanto, movimiento prohibido)
+        Nodo raiz = new Nodo(new NPuzzle(origen), null, 0, origen.h, 0, this.creados++);
+        this.abiertos.add(raiz);
+        this.enMemoria = 1;
+
+        long vueltas = 0;
+        while (!this.abiertos.isEmpty()) {
+            if (this.plazo.comprueba(++vueltas)) return this.estadisticas.interrumpe(pasos);
+
+            Nodo mejor = this.abiertos.first();
+            //el mejor no tiene camino que quepa en memoria: ninguno lo tiene
+            if (mejor.clave() == INFINITO) return pasos;
+            if (mejor.hijos == 0 && mejor.estado.h == 0 && mejor.estado.objetivo()) {
+                for (Nodo nodo = mejor; nodo.padre != null; nodo = nodo.padre)
+                    pasos.add(nodo.movimiento);
+                Collections.reverse(pasos);
+                return pasos;
+            }
+            this.abiertos.remove(mejor);
+            //pathmax: un hijo nunca promete menos que lo que prometía su padre
+            int cota = mejor.clave();
+
+            //hijos que faltan por generar
+            int prohibido = mejor.padre == null ? 0 : mejor.estado.inverso(mejor.movimiento);
+            int faltan = 0;
+            for (int movimiento = NPuzzle.ARRIBA; movimiento <= NPuzzle.IZQUIERDA; movimiento++)
+                if (movimiento != prohibido && (mejor.hijos & (1 << movimiento)) == 0
+                        && mejor.estado.puedeMover(movimiento)) faltan++;
+
+            //se hace sitio olvidando las peores hojas
+            while (this.enMemoria + faltan > this.maxNodos && olvidaPeor(mejor)) ;
+            if (faltan == 0 || this.enMemoria + faltan > this.maxNodos) {
+                //ni olvidando todo lo demás caben: por aquí no hay solución
+                //dentro de la memoria disponible
+                if (mejor.hijos == 0) mejor.f = INFINITO;
+                else mejor.olvidado = INFINITO;
+                if (mejor.enAbiertos()) this.abiertos.add(mejor);
+                continue;
+            }
+
+            this.estadisticas.expandidos++;
+            for (int movimiento = NPuzzle.ARRIBA; movimiento <= NPuzzle.IZQUIERDA; movimiento++) {
+                if (movimiento == prohibido || (mejor.hijos & (1 << movimiento)) != 0
+                        || !mejor.estado.puedeMover(movimiento)) continue;
+                NPuzzle estado = mejor.estado.copiaYMueveInseguro(movimiento);
+                int f = Math.max(cota, mejor.g + 1 + estado.h);
+                this.abiertos.add(new Nodo(estado, mejor, mejor.g + 1, f, movimiento, this.creados++));
+                mejor.hijos |= 1 << movimiento;
+                this.enMemoria++;
+                this.estadisticas.generados++;
+                this.estadisticas.evaluaciones++;
+            }
+            this.estadisticas.abiertos(this.abiertos.size());
+            mejor.olvidado = INFINITO;
+        }
+        return pasos;
+    }
+
+    /**
+     * Quita de memoria la peor hoja que no sea hija del nodo que se expande,
+     * guardando su f en el padre. Si el padre se queda sin hijos vuelve a ser
+     * una hoja, con el menor f olvidado.
+     *
+     * @return false si no queda ninguna hoja que olvidar
+     */
+    private boolean olvidaPeor(Nodo expandiendo) {
+        Iterator<Nodo> it = this.abiertos.descendingIterator();
+        Nodo hoja = null;
+        while (it.hasNext()) {
+            Nodo nodo = it.next();
+            if (nodo.hijos == 0 && nodo.padre != expandiendo && nodo.padre != null) {
+                hoja = nodo;
+                it.remove();
+                break;
+            }
+        }
+        if (hoja == null) return false;
+        this.enMemoria--;
+        this.olvidados++;
+
+        Nodo padre = hoja.padre;
+        if (padre.enAbiertos()) this.abiertos.remove(padre);
+        padre.hijos &= ~(1 << hoja.movimiento);
+        padre.olvidado = Math.min(padre.olvidado, hoja.f);
+        if (padre.hijos == 0) {
+            padre.f = Math.max(padre.f, padre.olvidado);
+            padre.olvidado = INFINITO;
+        }
+        this.abiertos.add(padre);
+        return true;
+    }
+
+    long olvidados() {
+        return this.olvidados;
+    }
+}
@@ -0,0 +1,81 @@
+package puzzle;
+
+/**
+ * Lista de abiertos para A* organizada en cubetas indexadas por f. Como f es
+ * un entero pequeño y acotado, insertar y extraer el mínimo son O(1)
+ * (amortizado). Dentro de cada cubeta se extrae en orden LIFO: los hijos se
+ * insertan después que su padre, así que a igual f sale antes el nodo de
+ * mayor g, que es el que está más cerca del objetivo.
+ */
+public class BucketQueue {
+    private NPuzzle[][] cubetas;
+    private int[] tamanos;
+    private int minimo;
+    private int size;
+
+    public BucketQueue() {
+        this.cubetas = new NPuzzle[64][];
+        this.tamanos = new int[64];
+        this.minimo = Integer.MAX_VALUE;
+        this.size = 0;
+    }
+
+    /**
+     * Inserta un nodo en la cubeta de su valor f
+     *
+     * @param puzzle nodo a insertar
+     */
+    public void push(NPuzzle puzzle) {
+        push(puzzle, puzzle.f());
+    }
+
+    /**
+     * Inserta un nodo con una prioridad dada
+     *
+     * @param puzzle nodo a insertar
+     * @param f      prioridad (no negativa), menor sale antes
+     */
+    public void push(NPuzzle puzzle, int f) {
+        if (f >= this.cubetas.length) {
+            int nuevo = Math.max(f + 1, this.cubetas.length * 2);
+            this.cubetas = java.util.Arrays.copyOf(this.cubetas, nuevo);
+            this.tamanos = java.util.Arrays.copyOf(this.tamanos, nuevo);
+        }
+        NPuzzle[] cubeta = this.cubetas[f];
+        int tam = this.tamanos[f];
+        if (cubeta == null) {
+            cubeta = new NPuzzle[16];
+            this.cubetas[f] = cubeta;
+        } else if (tam == cubeta.length) {
+            cubeta = java.util.Arrays.copyOf(cubeta, tam * 2);
+            this.cubetas[f] = cubeta;
+        }
+        cubeta[tam] = puzzle;
+        this.tamanos[f] = tam + 1;
+        if (f < this.minimo) this.minimo = f;
+        this.size++;
+    }
+
+    /**
+     * Extrae el nodo de menor f (el último insertado entre los de igual f)
+     *
+     * @return el nodo extraido, o null si no quedan nodos
+     */
+    public NPuzzle poll() {
+        if (this.size == 0) return null;
+        while (this.tamanos[this.minimo] == 0) this.minimo++;
+        int tam = --this.tamanos[this.minimo];
+        NPuzzle puzzle = this.cubetas[this.minimo][tam];
+        this.cubetas[this.minimo][tam] = null;
+        this.size--;
+        return puzzle;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+}
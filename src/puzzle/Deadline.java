@@ -0,0 +1,88 @@
+package puzzle;
+
+/**
+ * Plazo de una búsqueda sobre el reloj monótono (System.nanoTime), que además
+ * se puede cancelar desde otro hilo. Las búsquedas no miran el reloj en cada
+ * nodo: llaman a comprueba() con su contador de nodos y sólo cada MASCARA+1
+ * nodos se lee el reloj. Una vez vencido o cancelado sigue así.
+ */
+public class Deadline {
+
+    /**
+     * Límite de las búsquedas a las que no se les ha dado un plazo
+     */
+    public static final long LIMITE_POR_DEFECTO_MS = 180000;
+
+    /**
+     * Se mira el plazo cada 1024 nodos
+     */
+    static final int MASCARA = 0x3FF;
+
+    private final long fin;
+    private volatile boolean parado;
+
+    private Deadline(long fin) {
+        this.fin = fin;
+    }
+
+    /**
+     * Plazo que vence dentro de unos milisegundos
+     */
+    public static Deadline en(long millis) {
+        long ahora = System.nanoTime();
+        //sin desbordar con plazos enormes
+        long nanos = millis >= Long.MAX_VALUE / 1000000 ? Long.MAX_VALUE / 2 : millis * 1000000;
+        return new Deadline(ahora + nanos);
+    }
+
+    /**
+     * Plazo que no vence nunca: la búsqueda sólo para si se cancela
+     */
+    public static Deadline sinLimite() {
+        return en(Long.MAX_VALUE);
+    }
+
+    public static Deadline porDefecto() {
+        return en(LIMITE_POR_DEFECTO_MS);
+    }
+
+    /**
+     * Pide a la búsqueda que pare en cuanto lo compruebe
+     */
+    public void cancela() {
+        this.parado = true;
+    }
+
+    /**
+     * Mira el reloj y el aviso de cancelación
+     *
+     * @return si la búsqueda debe parar
+     */
+    public boolean vencido() {
+        if (this.parado) return true;
+        if (System.nanoTime() - this.fin >= 0) {
+            this.parado = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Comprobación barata para los bucles de búsqueda: sólo mira el plazo
+     * cuando el contador es múltiplo de MASCARA+1
+     *
+     * @param contador nodos que lleva la búsqueda
+     * @return si la búsqueda debe parar
+     */
+    final boolean comprueba(long contador) {
+        return (contador & MASCARA) == 0 && vencido();
+    }
+
+    /**
+     * Milisegundos que quedan, 0 si ya ha vencido
+     */
+    public long restante() {
+        if (this.parado) return 0;
+        return Math.max(0, (this.fin - System.nanoTime()) / 1000000);
+    }
+}
@@ -0,0 +1,191 @@
+package puzzle;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tabla completa de distancias del 8-puzzle. Para cada uno de los 9! tableros
+ * (indexados por el rango de su permutación) se guarda en 2 bits su distancia
+ * óptima al objetivo módulo 3, o 3 si no tiene solución. Como cada movimiento
+ * cambia la distancia exactamente en 1, desde cualquier tablero el vecino cuyo
+ * valor es (d-1) mod 3 está más cerca del objetivo, así que la solución óptima
+ * se obtiene siguiendo la tabla, sin buscar. La tabla ocupa 90KB, se calcula
+ * una vez con una búsqueda en anchura desde el objetivo y se guarda en un
+ * fichero que después se proyecta en memoria.
+ */
+public class DistanceOracle {
+
+    /**
+     * Número de tableros del 8-puzzle (9!)
+     */
+    static final int ESTADOS = 362880;
+
+    /**
+     * Valor de la tabla para los tableros sin solución
+     */
+    private static final int SIN_SOLUCION = 3;
+
+    private final ByteBuffer tabla;
+    private final Geometry geometria = Geometry.de(8);
+    private final long objetivo;
+
+    private DistanceOracle(ByteBuffer tabla) {
+        this.tabla = tabla;
+        long objetivo = 0;
+        for (int i = 0; i < 9; i++) objetivo |= (long) i << (i << 2);
+        this.objetivo = objetivo;
+    }
+
+    /**
+     * Carga la tabla de un fichero, proyectándolo en memoria. Si el fichero no
+     * existe la calcula y lo escribe antes. Si no se puede usar el fichero se
+     * trabaja con la tabla en memoria.
+     *
+     * @param fichero fichero donde se guarda la tabla
+     * @return el oráculo listo para usar
+     */
+    public static DistanceOracle carga(String fichero) {
+        File f = new File(fichero);
+        int tam = ESTADOS / 4;
+        try {
+            if (!f.exists() || f.length() != tam) {
+                try (OutputStream out = new FileOutputStream(f)) {
+                    out.write(genera());
+                }
+            }
+            try (FileChannel canal = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+                return new DistanceOracle(canal.map(FileChannel.MapMode.READ_ONLY, 0, tam));
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(DistanceOracle.class.getName()).log(Level.SEVERE, "Fallo usando fichero " + fichero, ex);
+            return enMemoria();
+        }
+    }
+
+    /**
+     * Calcula la tabla sin usar ningún fichero
+     *
+     * @return el oráculo listo para usar
+     */
+    public static DistanceOracle enMemoria() {
+        return new DistanceOracle(ByteBuffer.wrap(genera()));
+    }
+
+    /*---------------------------------------------------------------------------*/
+
+    /**
+     * Distancia óptima de un tablero al objetivo
+     *
+     * @param tablero tablero empaquetado del 8-puzzle
+     * @return número mínimo de movimientos, o -1 si no tiene solución
+     */
+    public int distancia(long tablero) {
+        if (valor(tablero) == SIN_SOLUCION) return -1;
+        int distancia = 0;
+        for (; tablero != this.objetivo; distancia++) {
+            int hueco = NPuzzle.posicionFicha(tablero, 0);
+            tablero = NPuzzle.mueveEmpaquetado(tablero, hueco, this.geometria.destino(hueco, acerca(tablero)));
+        }
+        return distancia;
+    }
+
+    /**
+     * Solución óptima de un tablero
+     *
+     * @param tablero tablero empaquetado del 8-puzzle
+     * @return la lista de movimientos del hueco, vacía si no tiene solución o
+     * ya es el objetivo
+     */
+    public ArrayList<Integer> solucion(long tablero) {
+        ArrayList<Integer> movimientos = new ArrayList<>();
+        if (valor(tablero) == SIN_SOLUCION) return movimientos;
+        while (tablero != this.objetivo) {
+            int movimiento = acerca(tablero), hueco = NPuzzle.posicionFicha(tablero, 0);
+            movimientos.add(movimiento);
+            tablero = NPuzzle.mueveEmpaquetado(tablero, hueco, this.geometria.destino(hueco, movimiento));
+        }
+        return movimientos;
+    }
+
+    /**
+     * Movimiento que acerca un tablero con solución (y que no es el objetivo)
+     * al objetivo
+     */
+    private int acerca(long tablero) {
+        int hueco = NPuzzle.posicionFicha(tablero, 0);
+        //los vecinos están a d-1 o d+1: el que vale (d-1) mod 3 está más cerca
+        int bueno = (valor(tablero) + 2) % 3;
+        for (int movimiento = NPuzzle.ARRIBA; movimiento < NPuzzle.IZQUIERDA; movimiento++) {
+            int destino = this.geometria.destino(hueco, movimiento);
+            if (destino >= 0 && valor(NPuzzle.mueveEmpaquetado(tablero, hueco, destino)) == bueno)
+                return movimiento;
+        }
+        //si ninguno de los otros acerca, es el último
+        return NPuzzle.IZQUIERDA;
+    }
+
+    private int valor(long tablero) {
+        int rango = NPuzzle.rango(tablero, 9);
+        return (this.tabla.get(rango >>> 2) >>> ((rango & 3) << 1)) & 3;
+    }
+
+    /*---------------------------------------------------------------------------*/
+
+    /**
+     * Calcula la tabla con una búsqueda en anchura desde el objetivo sobre
+     * arrays de tableros empaquetados, nivel a nivel.
+     *
+     * @return tabla de 2 bits por tablero
+     */
+    static byte[] genera() {
+        Geometry geometria = Geometry.de(8);
+        byte[] tabla = new byte[ESTADOS / 4];
+        Arrays.fill(tabla, (byte) 0xFF);
+
+        long objetivo = 0;
+        for (int i = 0; i < 9; i++) objetivo |= (long) i << (i << 2);
+        pon(tabla, NPuzzle.rango(objetivo, 9), 0);
+
+        long[] actual = {objetivo}, siguiente = new long[ESTADOS / 2];
+        int tamActual = 1;
+        for (int d = 1; tamActual > 0; d++) {
+            int tamSiguiente = 0;
+            for (int k = 0; k < tamActual; k++) {
+                long tablero = actual[k];
+                int hueco = NPuzzle.posicionFicha(tablero, 0);
+                for (int movimiento = NPuzzle.ARRIBA; movimiento <= NPuzzle.IZQUIERDA; movimiento++) {
+                    int destino = geometria.destino(hueco, movimiento);
+                    if (destino < 0) continue;
+                    long vecino = NPuzzle.mueveEmpaquetado(tablero, hueco, destino);
+                    int rango = NPuzzle.rango(vecino, 9);
+                    if (lee(tabla, rango) != SIN_SOLUCION) continue;
+                    pon(tabla, rango, d % 3);
+                    siguiente[tamSiguiente++] = vecino;
+                }
+            }
+            long[] aux = actual;
+            actual = siguiente;
+            siguiente = aux.length > 1 ? aux : new long[ESTADOS / 2];
+            tamActual = tamSiguiente;
+        }
+        return tabla;
+    }
+
+    private static int lee(byte[] tabla, int rango) {
+        return (tabla[rango >>> 2] >>> ((rango & 3) << 1)) & 3;
+    }
+
+    private static void pon(byte[] tabla, int rango, int valor) {
+        int desp = (rango & 3) << 1;
+        tabla[rango >>> 2] = (byte) ((tabla[rango >>> 2] & ~(3 << desp)) | (valor << desp));
+    }
+}
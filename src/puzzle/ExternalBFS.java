@@ -0,0 +1,367 @@
+package puzzle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Búsqueda en anchura en disco desde el objetivo, para tableros empaquetados
+ * (n <= 15). Cada nivel se guarda en un fichero con sus tableros ordenados y
+ * sin repetir, así que la memoria usada no depende del tamaño de los niveles.
+ * Para generar un nivel se recorre el anterior, los vecinos se acumulan en un
+ * bloque en memoria que se ordena y se vuelca a disco cuando se llena, y al
+ * final se mezclan todos los bloques quitando repetidos y los tableros de los
+ * dos niveles anteriores (los únicos donde puede estar ya un vecino). Si hay
+ * más de MAX_MEZCLA bloques se mezclan antes por grupos, en varias pasadas,
+ * para no abrir demasiados ficheros ni buffers a la vez.
+ *
+ * Un nivel sólo aparece con su nombre definitivo cuando está completo, así que
+ * si se interrumpe se puede continuar desde el último nivel terminado.
+ *
+ * Uso: java puzzle.ExternalBFS directorio [n] [niveles] [longs por bloque]
+ */
+public class ExternalBFS {
+
+    /**
+     * Tamaño del buffer de lectura o escritura de cada fichero; los bloques se
+     * leen todos a la vez y usan uno más pequeño
+     */
+    private static final int BUFFER = 1 << 20;
+    private static final int BUFFER_BLOQUE = 1 << 16;
+
+    /**
+     * Bloques que se mezclan a la vez como mucho (cada uno con su fichero
+     * abierto y su buffer)
+     */
+    static final int MAX_MEZCLA = 64;
+
+    private final int n;
+    private final Geometry geometria;
+    private final File directorio;
+    private final int bloque;
+
+    /**
+     * @param n          tamaño del problema (8, 15)
+     * @param directorio directorio de los ficheros de los niveles
+     * @param bloque     número de tableros que se ordenan en memoria a la vez
+     */
+    public ExternalBFS(int n, File directorio, int bloque) {
+        if (n > NPuzzle.MAX_EMPAQUETADO)
+            throw new RuntimeException("La búsqueda en disco sólo admite tableros empaquetados");
+        this.n = n;
+        this.geometria = Geometry.de(n);
+        this.directorio = directorio;
+        this.bloque = bloque;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("ExternalBFS <directorio> [8/15] [niveles] [longs por bloque]");
+            return;
+        }
+        int n = args.length > 1 ? Integer.valueOf(args[1]) : 15;
+        int niveles = args.length > 2 ? Integer.valueOf(args[2]) : Integer.MAX_VALUE;
+        int bloque = args.length > 3 ? Integer.valueOf(args[3]) : 1 << 22;
+        File directorio = new File(args[0]);
+        directorio.mkdirs();
+
+        ExternalBFS bfs = new ExternalBFS(n, directorio, bloque);
+        try {
+            long[] histograma = bfs.ejecuta(niveles);
+            System.out.println("#profundidad tableros");
+            for (int d = 0; d < histograma.length; d++)
+                System.out.println(d + " " + histograma[d]);
+            System.out.println("#más difíciles (profundidad " + (histograma.length - 1) + ")");
+            for (long tablero : bfs.masDificiles(10)) {
+                StringBuilder sb = new StringBuilder();
+                for (int i = 0; i <= n; i++)
+                    sb.append(i > 0 ? " " : "").append((tablero >>> (i << 2)) & 0xF);
+                System.out.println(sb);
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(ExternalBFS.class.getName()).log(Level.SEVERE, "Fallo en la búsqueda en disco", ex);
+        }
+    }
+
+    /*---------------------------------------------------------------------------*/
+
+    /**
+     * Genera niveles hasta que se vacía uno o se llega al máximo, continuando
+     * desde el último nivel completo que haya en el directorio.
+     *
+     * @param maxNiveles número máximo de niveles (contando el 0)
+     * @return número de tableros de cada nivel completo
+     * @throws IOException si falla la lectura o escritura de algún fichero
+     */
+    public long[] ejecuta(int maxNiveles) throws IOException {
+        limpia();
+        if (!nivel(0).exists()) {
+            long objetivo = 0;
+            for (int i = 0; i <= this.n; i++) objetivo |= (long) i << (i << 2);
+            try (Escritor out = new Escritor(temporal(0))) {
+                out.escribe(objetivo);
+            }
+            termina(0);
+        }
+
+        int d = 0;
+        while (nivel(d + 1).exists()) d++;
+        if (d > 0) System.out.println("Continuando desde el nivel " + d);
+        while (d + 1 < maxNiveles && tamano(d) > 0) {
+            long inicio = System.currentTimeMillis();
+            siguienteNivel(d);
+            d++;
+            System.out.println("Nivel " + d + ": " + tamano(d) + " tableros ("
+                    + (System.currentTimeMillis() - inicio) / 1000. + "seg)");
+        }
+        //el último nivel generado puede estar vacío
+        if (d > 0 && tamano(d) == 0) d--;
+
+        long[] histograma = new long[d + 1];
+        for (int i = 0; i <= d; i++) histograma[i] = tamano(i);
+        return histograma;
+    }
+
+    /**
+     * Primeros tableros (en orden) del nivel completo más profundo
+     *
+     * @param cantidad número máximo de tableros
+     * @return los tableros empaquetados
+     * @throws IOException si falla la lectura del fichero
+     */
+    public long[] masDificiles(int cantidad) throws IOException {
+        int d = 0;
+        while (nivel(d + 1).exists() && tamano(d + 1) > 0) d++;
+        long[] tableros = new long[(int) Math.min(cantidad, tamano(d))];
+        try (Lector in = new Lector(nivel(d))) {
+            for (int i = 0; i < tableros.length; i++) {
+                tableros[i] = in.actual;
+                in.avanza();
+            }
+        }
+        return tableros;
+    }
+
+    /*---------------------------------------------------------------------------*/
+
+    /**
+     * Genera el nivel d+1 a partir de los niveles d y d-1
+     */
+    private void siguienteNivel(int d) throws IOException {
+        //vecinos del nivel d, en bloques ordenados y sin repetidos
+        ArrayList<File> bloques = new ArrayList<>();
+        long[] vecinos = new long[this.bloque];
+        int tam = 0;
+        try (Lector in = new Lector(nivel(d))) {
+            while (in.hay) {
+                long tablero = in.actual;
+                int hueco = NPuzzle.posicionFicha(tablero, 0);
+                for (int movimiento = NPuzzle.ARRIBA; movimiento <= NPuzzle.IZQUIERDA; movimiento++) {
+                    int destino = this.geometria.destino(hueco, movimiento);
+                    if (destino < 0) continue;
+                    if (tam == vecinos.length) {
+                        bloques.add(vuelca(d + 1, bloques.size(), vecinos, tam));
+                        tam = 0;
+                    }
+                    vecinos[tam++] = NPuzzle.mueveEmpaquetado(tablero, hueco, destino);
+                }
+                in.avanza();
+            }
+        }
+        if (tam > 0 || bloques.isEmpty()) bloques.add(vuelca(d + 1, bloques.size(), vecinos, tam));
+        vecinos = null;
+
+        //mezclas intermedias por grupos hasta que quedan MAX_MEZCLA bloques
+        for (int pasada = 0; bloques.size() > MAX_MEZCLA; pasada++) {
+            ArrayList<File> mezclados = new ArrayList<>();
+            for (int i = 0; i < bloques.size(); i += MAX_MEZCLA) {
+                List<File> grupo = bloques.subList(i, Math.min(i + MAX_MEZCLA, bloques.size()));
+                File f = new File(this.directorio,
+                        String.format("nivel_%03d.mezcla_%d_%d", d + 1, pasada, mezclados.size()));
+                try (Escritor out = new Escritor(f)) {
+                    mezcla(grupo, out, null, null);
+                }
+                for (File g : grupo) g.delete();
+                mezclados.add(f);
+            }
+            bloques = mezclados;
+        }
+
+        //mezcla final, sin repetidos ni tableros de los niveles d y d-1
+        try (Lector actual = new Lector(nivel(d));
+             Lector anterior = new Lector(d > 0 ? nivel(d - 1) : null);
+             Escritor out = new Escritor(temporal(d + 1))) {
+            mezcla(bloques, out, actual, anterior);
+        }
+        termina(d + 1);
+        for (File f : bloques) f.delete();
+    }
+
+    /**
+     * Mezcla bloques ordenados sin repetidos y, si se dan los niveles d y d-1,
+     * sin los tableros que ya están en ellos
+     */
+    private static void mezcla(List<File> bloques, Escritor out, Lector actual, Lector anterior)
+            throws IOException {
+        PriorityQueue<Lector> cola = new PriorityQueue<>((a, b) -> Long.compare(a.actual, b.actual));
+        try {
+            for (File f : bloques) {
+                Lector lector = new Lector(f, BUFFER_BLOQUE);
+                if (lector.hay) cola.add(lector);
+                else lector.close();
+            }
+            long ultimo = 0;
+            boolean primero = true;
+            while (!cola.isEmpty()) {
+                Lector menor = cola.poll();
+                long tablero = menor.actual;
+                menor.avanza();
+                if (menor.hay) cola.add(menor);
+                else menor.close();
+
+                if (!primero && tablero == ultimo) continue;
+                primero = false;
+                ultimo = tablero;
+                if (actual != null && (actual.buscaDesde(tablero) || anterior.buscaDesde(tablero))) continue;
+                out.escribe(tablero);
+            }
+        } finally {
+            for (Lector lector : cola) lector.close();
+        }
+    }
+
+    /**
+     * Ordena un bloque de tableros y lo escribe sin repetidos
+     */
+    private File vuelca(int d, int numero, long[] tableros, int tam) throws IOException {
+        Arrays.sort(tableros, 0, tam);
+        File f = new File(this.directorio, String.format("nivel_%03d.bloque_%d", d, numero));
+        try (Escritor out = new Escritor(f)) {
+            for (int i = 0; i < tam; i++)
+                if (i == 0 || tableros[i] != tableros[i - 1]) out.escribe(tableros[i]);
+        }
+        return f;
+    }
+
+    private File nivel(int d) {
+        return new File(this.directorio, String.format("nivel_%03d.bin", d));
+    }
+
+    private File temporal(int d) {
+        return new File(this.directorio, String.format("nivel_%03d.tmp", d));
+    }
+
+    private long tamano(int d) {
+        return nivel(d).length() / 8;
+    }
+
+    /**
+     * Da su nombre definitivo a un nivel completo
+     */
+    private void termina(int d) throws IOException {
+        Files.move(temporal(d).toPath(), nivel(d).toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Borra los restos de un nivel que se quedó a medias
+     */
+    private void limpia() {
+        File[] restos = this.directorio.listFiles((dir, nombre) ->
+                nombre.startsWith("nivel_") && !nombre.endsWith(".bin"));
+        if (restos != null)
+            for (File f : restos) f.delete();
+    }
+
+    /*---------------------------------------------------------------------------*/
+
+    /**
+     * Lectura secuencial de un fichero de longs ordenados
+     */
+    private static final class Lector implements AutoCloseable {
+        private final FileChannel canal;
+        private final ByteBuffer buffer;
+        long actual;
+        boolean hay;
+
+        Lector(File f) throws IOException {
+            this(f, BUFFER);
+        }
+
+        /**
+         * @param f      fichero a leer, o null para un fichero vacío
+         * @param buffer tamaño del buffer de lectura
+         */
+        Lector(File f, int buffer) throws IOException {
+            this.canal = f == null ? null : FileChannel.open(f.toPath(), StandardOpenOption.READ);
+            this.buffer = ByteBuffer.allocateDirect(buffer);
+            this.buffer.limit(0);
+            avanza();
+        }
+
+        void avanza() throws IOException {
+            if (this.canal != null && this.buffer.remaining() < 8) {
+                this.buffer.compact();
+                while (this.canal.read(this.buffer) > 0 && this.buffer.position() < 8) ;
+                this.buffer.flip();
+            }
+            this.hay = this.buffer.remaining() >= 8;
+            if (this.hay) this.actual = this.buffer.getLong();
+        }
+
+        /**
+         * Avanza hasta el primer valor >= tablero
+         *
+         * @return si el fichero contiene el tablero
+         */
+        boolean buscaDesde(long tablero) throws IOException {
+            while (this.hay && this.actual < tablero) avanza();
+            return this.hay && this.actual == tablero;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.canal != null) this.canal.close();
+        }
+    }
+
+    /**
+     * Escritura secuencial de longs en un fichero
+     */
+    private static final class Escritor implements AutoCloseable {
+        private final FileChannel canal;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER);
+
+        Escritor(File f) throws IOException {
+            this.canal = FileChannel.open(f.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        void escribe(long valor) throws IOException {
+            if (this.buffer.remaining() < 8) vacia();
+            this.buffer.putLong(valor);
+        }
+
+        private void vacia() throws IOException {
+            this.buffer.flip();
+            while (this.buffer.hasRemaining()) this.canal.write(this.buffer);
+            this.buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            vacia();
+            this.canal.force(false);
+            this.canal.close();
+        }
+    }
+}
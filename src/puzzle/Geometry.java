@@ -0,0 +1,165 @@
+package puzzle;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tablas precalculadas que sólo dependen del tamaño del tablero. Se calculan
+ * una sola vez por tamaño y las comparten todos los nodos de ese tamaño.
+ */
+public final class Geometry {
+
+    /**
+     * Tamaño del problema, el número de casillas es n+1
+     */
+    final int n;
+
+    /**
+     * Ancho del tablero (raiz de n+1)
+     */
+    final int ancho;
+
+    /**
+     * Número de casillas del tablero (n+1)
+     */
+    final int casillas;
+
+    /**
+     * Distancia Manhattan de la ficha f colocada en la posición p, guardada en
+     * manhattan[f*casillas+p]. Para el hueco (f=0) siempre vale 0.
+     */
+    final int[] manhattan;
+
+    /**
+     * Casilla simétrica de cada casilla respecto a la diagonal principal. El
+     * objetivo es simétrico, así que también es la ficha que corresponde a
+     * cada ficha en el tablero traspuesto.
+     */
+    final int[] traspuesta;
+
+    /**
+     * Movimientos válidos del hueco en cada casilla, como máscara de bits
+     * (bit 1 << movimiento)
+     */
+    final int[] mascaras;
+
+    /**
+     * Movimientos válidos del hueco en cada casilla, en el orden IZQUIERDA,
+     * DERECHA, ARRIBA, ABAJO. Son compartidos: no se deben modificar.
+     */
+    final int[][] movimientos;
+
+    /**
+     * Casilla a la que va el hueco desde p con el movimiento m, guardada en
+     * destinos[p*5+m]; -1 si el movimiento no es válido
+     */
+    final int[] destinos;
+
+    /**
+     * Tablas ya calculadas, por ancho del tablero
+     */
+    private static final ConcurrentHashMap<Integer, Geometry> calculadas = new ConcurrentHashMap<>();
+
+    private Geometry(int n) {
+        this.n = n;
+        this.ancho = (int) Math.sqrt(n + 1);
+        this.casillas = n + 1;
+
+        this.manhattan = new int[casillas * casillas];
+        for (int f = 1; f < casillas; f++)
+            for (int p = 0; p < casillas; p++)
+                this.manhattan[f * casillas + p] = Math.abs(f / ancho - p / ancho)
+                        + Math.abs(f % ancho - p % ancho);
+
+        this.traspuesta = new int[casillas];
+        for (int p = 0; p < casillas; p++)
+            this.traspuesta[p] = (p % ancho) * ancho + p / ancho;
+
+        this.mascaras = new int[casillas];
+        this.movimientos = new int[casillas][];
+        this.destinos = new int[casillas * 5];
+        int[] orden = {NPuzzle.IZQUIERDA, NPuzzle.DERECHA, NPuzzle.ARRIBA, NPuzzle.ABAJO};
+        for (int p = 0; p < casillas; p++) {
+            this.destinos[p * 5] = -1;
+            int[] validos = new int[4];
+            int tam = 0;
+            for (int m : orden) {
+                int d = calculaDestino(p, m);
+                this.destinos[p * 5 + m] = d;
+                if (d < 0) continue;
+                this.mascaras[p] |= 1 << m;
+                validos[tam++] = m;
+            }
+            this.movimientos[p] = Arrays.copyOf(validos, tam);
+        }
+    }
+
+    /**
+     * Devuelve las tablas para un n-puzzle, calculándolas la primera vez.
+     *
+     * @param n tamaño del problema (8, 15, 24...)
+     * @return tablas del tamaño pedido
+     */
+    static Geometry de(int n) {
+        return calculadas.computeIfAbsent((int) Math.sqrt(n + 1), ancho -> new Geometry(n));
+    }
+
+    /**
+     * Distancia Manhattan de una ficha a su casilla objetivo
+     *
+     * @param ficha    ficha (1..n)
+     * @param posicion casilla que ocupa
+     * @return distancia Manhattan a su posición final
+     */
+    int distancia(int ficha, int posicion) {
+        return this.manhattan[ficha * this.casillas + posicion];
+    }
+
+    /**
+     * Casilla a la que va el hueco con un movimiento
+     *
+     * @param hueco      posición del hueco
+     * @param movimiento dirección del movimiento del hueco
+     * @return nueva posición del hueco, o -1 si el movimiento no es válido
+     */
+    int destino(int hueco, int movimiento) {
+        if (movimiento < NPuzzle.ARRIBA || movimiento > NPuzzle.IZQUIERDA) return -1;
+        return this.destinos[hueco * 5 + movimiento];
+    }
+
+    private int calculaDestino(int hueco, int movimiento) {
+        switch (movimiento) {
+            case NPuzzle.ARRIBA: return hueco >= ancho ? hueco - ancho : -1;
+            case NPuzzle.ABAJO: return hueco < casillas - ancho ? hueco + ancho : -1;
+            case NPuzzle.DERECHA: return (hueco + 1) % ancho != 0 ? hueco + 1 : -1;
+            case NPuzzle.IZQUIERDA: return hueco % ancho != 0 ? hueco - 1 : -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Tablero empaquetado traspuesto: cada ficha pasa a la casilla simétrica y
+     * se cambia por su simétrica
+     */
+    long traspone(long tablero) {
+        long traspuesto = 0;
+        for (int p = 0; p < this.casillas; p++) {
+            int ficha = (int) (tablero >>> (p << 2)) & 0xF;
+            traspuesto |= (long) this.traspuesta[ficha] << (this.traspuesta[p] << 2);
+        }
+        return traspuesto;
+    }
+
+    /**
+     * Movimiento equivalente en el tablero traspuesto
+     */
+    static int traspone(int movimiento) {
+        switch (movimiento) {
+            case NPuzzle.ARRIBA: return NPuzzle.IZQUIERDA;
+            case NPuzzle.IZQUIERDA: return NPuzzle.ARRIBA;
+            case NPuzzle.ABAJO: return NPuzzle.DERECHA;
+            case NPuzzle.DERECHA: return NPuzzle.ABAJO;
+        }
+        return movimiento;
+    }
+}
@@ -0,0 +1,23 @@
+package puzzle;
+
+/**
+ * Distancia de Hamming: número de fichas fuera de su casilla. A diferencia de
+ * NPuzzle.heuristica2() no cuenta el hueco, para que sea admisible.
+ */
+public class HammingHeuristic implements Heuristic {
+
+    @Override
+    public int evalua(NPuzzle puzzle) {
+        int distancia = 0;
+        for (int i = 0; i < puzzle.n + 1; i++) {
+            int c = puzzle.casilla(i);
+            if (c != 0 && c != i) distancia++;
+        }
+        return distancia;
+    }
+
+    @Override
+    public int actualiza(NPuzzle puzzle, int h, int ficha, int desde, int hasta) {
+        return h + (ficha != hasta ? 1 : 0) - (ficha != desde ? 1 : 0);
+    }
+}
@@ -0,0 +1,35 @@
+package puzzle;
+
+/**
+ * Función heurística para el n-puzzle. Además del cálculo completo tiene una
+ * actualización incremental: cada movimiento sólo cambia de sitio una ficha,
+ * así que el nuevo valor suele poder obtenerse del anterior sin recorrer el
+ * tablero.
+ */
+public interface Heuristic {
+
+    Heuristic MANHATTAN = new ManhattanHeuristic();
+    Heuristic HAMMING = new HammingHeuristic();
+    Heuristic CONFLICTO_LINEAL = new LinearConflictHeuristic();
+    Heuristic WALKING_DISTANCE = new WalkingDistanceHeuristic();
+
+    /**
+     * Calcula el valor heurístico de un tablero desde cero
+     *
+     * @param puzzle tablero a evaluar
+     * @return estimación del número de movimientos hasta el objetivo
+     */
+    int evalua(NPuzzle puzzle);
+
+    /**
+     * Calcula el valor heurístico tras un movimiento
+     *
+     * @param puzzle tablero ya movido
+     * @param h      valor antes del movimiento
+     * @param ficha  ficha que se ha movido
+     * @param desde  casilla en la que estaba la ficha (ahora el hueco)
+     * @param hasta  casilla a la que ha ido la ficha (antes el hueco)
+     * @return valor heurístico del tablero movido
+     */
+    int actualiza(NPuzzle puzzle, int h, int ficha, int desde, int hasta);
+}
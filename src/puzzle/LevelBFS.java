@@ -0,0 +1,144 @@
+package puzzle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Búsqueda en anchura nivel a nivel sobre tableros empaquetados (n <= 15).
+ * Cada nivel es un array plano de longs, sin un objeto por nodo. Los visitados
+ * y el movimiento al padre de cada uno se guardan, en el 8-puzzle, en un array
+ * de bytes indexado por el rango de la permutación (9! entradas) y, en el
+ * resto, en una Memory.
+ */
+class LevelBFS {
+    /**
+     * Marca de la raíz en la tabla de padres del 8-puzzle
+     */
+    private static final byte RAIZ = 5;
+
+    private final int n;
+    private final Geometry geometria;
+    private final byte[] padresPorRango;
+    private final Memory memoria;
+    private final ArrayList<Integer> niveles = new ArrayList<>();
+
+    LevelBFS(int n) {
+        this.n = n;
+        this.geometria = Geometry.de(n);
+        if (n == 8) {
+            this.padresPorRango = new byte[362880];
+            this.memoria = null;
+        } else {
+            this.padresPorRango = null;
+            this.memoria = new Memory(1 << 16);
+        }
+    }
+
+    /**
+     * Número de tableros de cada nivel de la última búsqueda
+     */
+    ArrayList<Integer> niveles() {
+        return this.niveles;
+    }
+
+    /**
+     * Busca el camino más corto desde un tablero al objetivo
+     *
+     * @param origen tablero empaquetado de partida
+     * @param plazo  plazo de la búsqueda
+     * @param stats  estadísticas de la búsqueda
+     * @return la lista de movimientos, vacía si no hay solución, se acaba el
+     * plazo o el origen ya es el objetivo
+     */
+    ArrayList<Integer> resuelve(long origen, Deadline plazo, SearchStats stats) {
+        long objetivo = 0;
+        for (int i = 0; i <= this.n; i++) objetivo |= (long) i << (i << 2);
+
+        this.niveles.clear();
+        if (origen == objetivo) return new ArrayList<>();
+        marca(origen, RAIZ);
+
+        long[] actual = {origen}, siguiente = new long[64];
+        int tamActual = 1;
+        while (tamActual > 0) {
+            this.niveles.add(tamActual);
+            stats.abiertos(tamActual);
+            int tamSiguiente = 0;
+            for (int k = 0; k < tamActual; k++) {
+                //comprobar plazo
+                if (plazo.comprueba(++stats.expandidos))
+                    return stats.interrumpe(new ArrayList<>());
+
+                long tablero = actual[k];
+                int hueco = NPuzzle.posicionFicha(tablero, 0);
+                for (int movimiento = NPuzzle.ARRIBA; movimiento <= NPuzzle.IZQUIERDA; movimiento++) {
+                    int destino = this.geometria.destino(hueco, movimiento);
+                    if (destino < 0) continue;
+                    long hijo = NPuzzle.mueveEmpaquetado(tablero, hueco, destino);
+                    stats.generados++;
+                    if (!marca(hijo, inverso(movimiento))) {
+                        stats.duplicados++;
+                        continue;
+                    }
+                    if (hijo == objetivo) return camino(origen, objetivo);
+                    if (tamSiguiente == siguiente.length)
+                        siguiente = Arrays.copyOf(siguiente, tamSiguiente * 2);
+                    siguiente[tamSiguiente++] = hijo;
+                }
+            }
+            //el nivel siguiente pasa a ser el actual; se reutiliza el array viejo
+            long[] aux = actual;
+            actual = siguiente;
+            siguiente = aux.length > 1 ? aux : new long[64];
+            tamActual = tamSiguiente;
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Marca un tablero como visitado guardando el movimiento a su padre
+     *
+     * @return true si no estaba visitado
+     */
+    private boolean marca(long tablero, int padre) {
+        if (this.padresPorRango != null) {
+            int rango = NPuzzle.rango(tablero, 9);
+            if (this.padresPorRango[rango] != 0) return false;
+            this.padresPorRango[rango] = (byte) padre;
+            return true;
+        }
+        return !this.memoria.isViewed(tablero, padre);
+    }
+
+    private int padre(long tablero) {
+        if (this.padresPorRango != null)
+            return this.padresPorRango[NPuzzle.rango(tablero, 9)];
+        return this.memoria.padre(tablero);
+    }
+
+    /**
+     * Reconstruye el camino siguiendo los movimientos al padre desde el objetivo
+     */
+    private ArrayList<Integer> camino(long origen, long objetivo) {
+        ArrayList<Integer> movimientos = new ArrayList<>();
+        long actual = objetivo;
+        while (actual != origen) {
+            int padre = padre(actual);
+            movimientos.add(inverso(padre));
+            int hueco = NPuzzle.posicionFicha(actual, 0);
+            actual = NPuzzle.mueveEmpaquetado(actual, hueco, this.geometria.destino(hueco, padre));
+        }
+        Collections.reverse(movimientos);
+        return movimientos;
+    }
+
+    private static int inverso(int movimiento) {
+        switch (movimiento) {
+            case NPuzzle.ARRIBA: return NPuzzle.ABAJO;
+            case NPuzzle.ABAJO: return NPuzzle.ARRIBA;
+            case NPuzzle.DERECHA: return NPuzzle.IZQUIERDA;
+            default: return NPuzzle.DERECHA;
+        }
+    }
+}
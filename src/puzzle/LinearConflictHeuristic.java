@@ -0,0 +1,73 @@
+package puzzle;
+
+/**
+ * Distancia Manhattan más conflictos lineales. Dos fichas están en conflicto
+ * si están en la fila (o columna) a la que pertenecen pero en orden inverso:
+ * una de ellas tendrá que salir de la línea y volver, lo que añade 2
+ * movimientos. En cada línea se cuentan las fichas que hay que sacar para que
+ * las demás queden en orden (su número menos la mayor subsecuencia creciente).
+ */
+public class LinearConflictHeuristic implements Heuristic {
+
+    @Override
+    public int evalua(NPuzzle puzzle) {
+        int h = Heuristic.MANHATTAN.evalua(puzzle);
+        int ancho = puzzle.geometria.ancho;
+        for (int linea = 0; linea < ancho; linea++)
+            h += 2 * (conflictos(puzzle, linea, true, -1, -1) + conflictos(puzzle, linea, false, -1, -1));
+        return h;
+    }
+
+    @Override
+    public int actualiza(NPuzzle puzzle, int h, int ficha, int desde, int hasta) {
+        int ancho = puzzle.geometria.ancho;
+        int manhattan = puzzle.geometria.distancia(ficha, hasta) - puzzle.geometria.distancia(ficha, desde);
+        //un movimiento vertical sólo cambia el orden de las dos filas y uno
+        //horizontal el de las dos columnas: en la otra dirección la ficha sigue
+        //en la misma línea y el hueco no cuenta
+        boolean filas = Math.abs(desde - hasta) == ancho;
+        int a = filas ? desde / ancho : desde % ancho,
+                b = filas ? hasta / ancho : hasta % ancho;
+        int antes = conflictos(puzzle, a, filas, desde, hasta) + conflictos(puzzle, b, filas, desde, hasta);
+        int despues = conflictos(puzzle, a, filas, -1, -1) + conflictos(puzzle, b, filas, -1, -1);
+        return h + manhattan + 2 * (despues - antes);
+    }
+
+    /**
+     * Fichas a sacar de una línea para que las que pertenecen a ella queden en
+     * orden. Si desde >= 0 se cuenta sobre el tablero anterior al movimiento (la
+     * ficha que ahora está en hasta estaba en desde).
+     */
+    private static int conflictos(NPuzzle puzzle, int linea, boolean fila, int desde, int hasta) {
+        int ancho = puzzle.geometria.ancho;
+        //orden objetivo dentro de la línea de las fichas que le pertenecen,
+        //4 bits por ficha
+        long secuencia = 0;
+        int k = 0;
+        for (int j = 0; j < ancho; j++) {
+            int pos = fila ? linea * ancho + j : j * ancho + linea;
+            int v;
+            if (pos == desde) v = puzzle.casilla(hasta);
+            else if (pos == hasta) v = 0;
+            else v = puzzle.casilla(pos);
+            if (v == 0) continue;
+            if ((fila ? v / ancho : v % ancho) != linea) continue;
+            secuencia |= (long) (fila ? v % ancho : v / ancho) << (k << 2);
+            k++;
+        }
+        if (k < 2) return 0;
+
+        //mayor subsecuencia creciente, también con 4 bits por elemento
+        long largos = 0;
+        int mejor = 0;
+        for (int i = 0; i < k; i++) {
+            int vi = (int) (secuencia >>> (i << 2)) & 0xF, li = 1;
+            for (int j = 0; j < i; j++)
+                if (((int) (secuencia >>> (j << 2)) & 0xF) < vi)
+                    li = Math.max(li, ((int) (largos >>> (j << 2)) & 0xF) + 1);
+            largos |= (long) li << (i << 2);
+            mejor = Math.max(mejor, li);
+        }
+        return k - mejor;
+    }
+}
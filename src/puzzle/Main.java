@@ -1,32 +1,61 @@
 package puzzle;
 
+import java.io.BufferedReader;
+import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class Main {
 
     /**
-     * CTes. para indicar los segundos máximos de espera
+     * CTe. para indicar los segundos máximos de espera (el plazo por defecto de
+     * las búsquedas)
      */
-    public static final int TMAX = 180;
-    public static final int TMAXmillis = 180000;
+    public static final int TMAX = (int) (Deadline.LIMITE_POR_DEFECTO_MS / 1000);
+
+    /**
+     * Soluciones que se guardan en la caché del modo por lotes
+     */
+    static final int CAPACIDAD_CACHE = 1 << 16;
+
+    /**
+     * Puzzles del lote enviados y sin terminar, por hilo: al llegar al límite
+     * se deja de leer el fichero hasta que termina alguno
+     */
+    static final int EN_VUELO_POR_HILO = 2;
 
     public static void main(String[] args) {
         int n;
         NPuzzle puzzle;
         String salida=null;
+        //Modo por lotes: un puzzle por línea del fichero
+        if (args.length >= 3 && args[0].equals("-lote")) {
+            lote(args[1], Integer.valueOf(args[2]), args.length > 3 ? args[3] : null,
+                    args.length > 4 ? Long.valueOf(args[4]) : Deadline.LIMITE_POR_DEFECTO_MS);
+            return;
+        }
         //Si el número de parámetros es incorrecto salimos
         if (args.length < 2){
             System.out.println("npuzzle "+"<fich_puzzle> 8/15 [<fich_salida>]\n");
+            System.out.println("npuzzle "+"-lote <fich_puzzles> 8/15 [<fich_salida> [<ms_por_puzzle>]]\n");
             System.out.println(" Usando n=8. Genero puzzle aleatorio.  ");
             n=8;
-            puzzle= new NPuzzle(n);
-
-            while(!puzzle.resoluble())puzzle = new NPuzzle(n);
+            puzzle= NPuzzle.aleatorioResoluble(n, new Random());
 
         } else {
             n=Integer.valueOf(args[1]);
@@ -84,4 +113,220 @@ public class Main {
             }
         }
     }
+
+    /*---------------------------------------------------------------------------*/
+
+    /**
+     * Resultado de resolver un puzzle del lote
+     */
+    private static class Resultado {
+        int linea;
+        ArrayList<Integer> movimientos;
+        long nodos;
+        long nanos;
+        boolean resoluble;
+        boolean interrumpido;
+    }
+
+    /**
+     * Resuelve todos los puzzles de un fichero, uno por línea (n+1 números
+     * separados por espacios), con un hilo por procesador y una sola JVM. Cada
+     * resultado se escribe según termina, mientras se sigue leyendo el fichero:
+     * línea, pasos, nodos expandidos, tiempo en ms y movimientos. Cada puzzle
+     * tiene su propio plazo desde que empieza a resolverse; si vence se escribe
+     * "agotado" con los nodos y el tiempo hasta entonces, y si la búsqueda falla
+     * se escribe "error" con la causa. Las líneas que no son un tablero válido
+     * (números fuera de 0..n o repetidos) se avisan en el log y se saltan. El
+     * fichero se lee a medida que se resuelve: como mucho hay EN_VUELO_POR_HILO
+     * puzzles por hilo enviados y sin terminar. Al final se muestran los
+     * puzzles por segundo, cuántos se han resuelto, no tenían solución, se han
+     * agotado o han fallado, y los percentiles de latencia.
+     * Los tableros repetidos (o traspuestos de otro) se sacan de una caché de
+     * soluciones en lugar de resolverse otra vez.
+     *
+     * @param fichero fichero con los puzzles
+     * @param n       tamaño de los puzzles (8, 15)
+     * @param salida  fichero de resultados, o null para la salida estándar
+     * @param limite  milisegundos de plazo de cada puzzle
+     */
+    static void lote(String fichero, int n, String salida, long limite) {
+        int hilos = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
+        CompletionService<Resultado> resultados = new ExecutorCompletionService<>(pool);
+        SolutionCache cache = n <= NPuzzle.MAX_EMPAQUETADO ? new SolutionCache(n, CAPACIDAD_CACHE) : null;
+
+        long tiempo_inicial = System.nanoTime();
+        int enviados = 0;
+        Informe informe = null;
+        //la salida estándar no se cierra al acabar, que se sigue usando abajo
+        try (PrintWriter out = salida != null ? new PrintWriter(new FileWriter(salida))
+                : new PrintWriter(new OutputStreamWriter(System.out)) {
+                    @Override
+                    public void close() {
+                        flush();
+                    }
+                };
+             BufferedReader in = new BufferedReader(new FileReader(fichero))) {
+            informe = new Informe(out);
+            out.println("#linea pasos nodos ms movimientos");
+            String linea;
+            int numero = 0;
+            while ((linea = in.readLine()) != null) {
+                numero++;
+                linea = linea.trim();
+                if (linea.isEmpty() || linea.startsWith("#")) continue;
+                int[] casillas = casillas(linea, n, numero);
+                if (casillas == null) continue;
+                final int lineaPuzzle = numero;
+                if (enviados - informe.terminados >= EN_VUELO_POR_HILO * hilos) informe.escribe(resultados.take());
+                informe.lineas.put(resultados.submit(() -> resuelve(lineaPuzzle, new NPuzzle(n, casillas), limite, cache)),
+                        lineaPuzzle);
+                enviados++;
+                //los que ya han terminado se escriben sin esperar a leer todo
+                for (Future<Resultado> hecho; (hecho = resultados.poll()) != null; ) informe.escribe(hecho);
+            }
+            while (informe.terminados < enviados) informe.escribe(resultados.take());
+        } catch (IOException ex) {
+            Logger.getLogger(Main.class.getName()).log(Level.SEVERE, "Fallo en el modo por lotes", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            Logger.getLogger(Main.class.getName()).log(Level.SEVERE, "Modo por lotes interrumpido", ex);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        double segundos = (System.nanoTime() - tiempo_inicial) / 1e9;
+        System.out.println("Puzzles enviados: " + enviados + " en " + segundos + "seg ("
+                + enviados / segundos + " puzzles/seg, " + hilos + " hilos)");
+        if (informe == null) return;
+        System.out.println("Resueltos: " + informe.resueltos + ", sin solución: " + informe.sinSolucion
+                + ", agotados: " + informe.agotados + ", con error: " + informe.errores);
+        long[] latencias = Arrays.copyOf(informe.latencias, informe.medidos);
+        Arrays.sort(latencias);
+        System.out.println("Nodos expandidos: " + informe.nodos + " (" + Math.round(informe.nodos / segundos)
+                + " nodos/seg)");
+        if (latencias.length > 0)
+            System.out.println("Latencia ms: p50=" + percentil(latencias, 50) + " p90=" + percentil(latencias, 90)
+                    + " p99=" + percentil(latencias, 99) + " max=" + latencias[latencias.length - 1] / 1000000.);
+        if (cache != null) System.out.println(cache);
+    }
+
+    /**
+     * Casillas de una línea del lote, o null (avisando en el log) si no son
+     * n+1 números de 0 a n sin repetir
+     */
+    private static int[] casillas(String linea, int n, int numero) {
+        String[] campos = linea.split("\\s+");
+        if (campos.length != n + 1) {
+            Logger.getLogger(Main.class.getName()).log(Level.WARNING,
+                    "Línea {0}: se esperaban {1} números", new Object[]{numero, n + 1});
+            return null;
+        }
+        int[] casillas = new int[n + 1];
+        boolean[] usadas = new boolean[n + 1];
+        for (int i = 0; i <= n; i++) {
+            int ficha;
+            try {
+                ficha = Integer.parseInt(campos[i]);
+            } catch (NumberFormatException ex) {
+                ficha = -1;
+            }
+            if (ficha < 0 || ficha > n || usadas[ficha]) {
+                Logger.getLogger(Main.class.getName()).log(Level.WARNING,
+                        "Línea {0}: \"{1}\" no es una ficha de 0 a {2} sin repetir",
+                        new Object[]{numero, campos[i], n});
+                return null;
+            }
+            usadas[ficha] = true;
+            casillas[i] = ficha;
+        }
+        return casillas;
+    }
+
+    /**
+     * Escribe los resultados del lote según terminan y acumula sus cifras
+     */
+    private static class Informe {
+        final PrintWriter out;
+        /**
+         * Línea del fichero de cada puzzle enviado, para poder avisar de sus fallos
+         */
+        final HashMap<Future<Resultado>, Integer> lineas = new HashMap<>();
+        /**
+         * Latencias de los puzzles terminados sin error (las medidas primeras)
+         */
+        long[] latencias = new long[64];
+        int medidos;
+        int terminados;
+        int resueltos;
+        int sinSolucion;
+        int agotados;
+        int errores;
+        long nodos;
+
+        Informe(PrintWriter out) {
+            this.out = out;
+        }
+
+        void escribe(Future<Resultado> hecho) throws InterruptedException {
+            int linea = this.lineas.remove(hecho);
+            this.terminados++;
+            Resultado r;
+            try {
+                r = hecho.get();
+            } catch (ExecutionException ex) {
+                this.errores++;
+                Logger.getLogger(Main.class.getName()).log(Level.WARNING,
+                        "Línea " + linea + ": fallo resolviendo el puzzle", ex.getCause());
+                this.out.println(linea + " error " + ex.getCause());
+                this.out.flush();
+                return;
+            }
+            if (this.medidos == this.latencias.length)
+                this.latencias = Arrays.copyOf(this.latencias, this.latencias.length * 2);
+            this.latencias[this.medidos++] = r.nanos;
+            this.nodos += r.nodos;
+            StringBuilder sb = new StringBuilder();
+            sb.append(r.linea).append(' ');
+            if (!r.resoluble) {
+                this.sinSolucion++;
+                sb.append("sin_solucion");
+            } else if (r.interrumpido) {
+                this.agotados++;
+                sb.append("agotado ").append(r.nodos).append(' ').append(r.nanos / 1000000.);
+            } else {
+                this.resueltos++;
+                sb.append(r.movimientos.size()).append(' ').append(r.nodos).append(' ')
+                        .append(r.nanos / 1000000.);
+                for (int m : r.movimientos) sb.append(' ').append(m);
+            }
+            this.out.println(sb);
+            this.out.flush();
+        }
+    }
+
+    private static Resultado resuelve(int linea, NPuzzle puzzle, long limite, SolutionCache cache) {
+        Resultado r = new Resultado();
+        r.linea = linea;
+        long inicio = System.nanoTime();
+        r.resoluble = puzzle.resoluble();
+        if (r.resoluble && cache != null) r.movimientos = cache.busca(puzzle);
+        if (r.resoluble && r.movimientos == null) {
+            puzzle.usaPlazo(Deadline.en(limite));
+            r.movimientos = puzzle.busquedaIDA();
+            r.interrumpido = puzzle.estadisticas().isInterrumpida();
+            if (cache != null && !r.interrumpido) cache.guarda(puzzle, r.movimientos);
+            r.nodos = puzzle.estadisticas().getExpandidos();
+        }
+        r.nanos = System.nanoTime() - inicio;
+        return r;
+    }
+
+    /**
+     * Percentil de un array ordenado de latencias en nanosegundos, en ms
+     */
+    private static double percentil(long[] ordenadas, int p) {
+        int i = (int) Math.ceil(p / 100. * ordenadas.length) - 1;
+        return ordenadas[Math.max(0, i)] / 1000000.;
+    }
 }
@@ -0,0 +1,23 @@
+package puzzle;
+
+/**
+ * Distancia Manhattan: suma de las distancias de cada ficha a su casilla
+ * objetivo, con la tabla precalculada de Geometry.
+ */
+public class ManhattanHeuristic implements Heuristic {
+
+    @Override
+    public int evalua(NPuzzle puzzle) {
+        Geometry geometria = puzzle.geometria;
+        int distancia = 0;
+        for (int i = 0; i < puzzle.n + 1; i++)
+            //la tabla ya vale 0 para el hueco
+            distancia += geometria.distancia(puzzle.casilla(i), i);
+        return distancia;
+    }
+
+    @Override
+    public int actualiza(NPuzzle puzzle, int h, int ficha, int desde, int hasta) {
+        return h + puzzle.geometria.distancia(ficha, hasta) - puzzle.geometria.distancia(ficha, desde);
+    }
+}
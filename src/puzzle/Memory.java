@@ -1,30 +1,151 @@
 package puzzle;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 
 /**
  * Created by Paolo on 25/10/16.
+ *
+ * Tabla de tableros visitados. Para n <= 15 es una tabla hash de
+ * direccionamiento abierto sobre la clave exacta del tablero (NPuzzle.clave()),
+ * sin objetos por entrada. Los tableros más grandes se guardan completos.
+ * Junto a cada tablero se guarda el movimiento que lleva a su padre, con lo
+ * que el camino se reconstruye sin guardar los nodos cerrados.
  */
 public class Memory {
-    HashMap<Integer, Boolean> table;
+    /**
+     * Marca de hueco libre en la tabla. Ninguna clave válida vale -1.
+     */
+    private static final long LIBRE = -1L;
+
+    long[] table;
+    byte[] padres;
+    int mascara;
+    HashMap<ByteBuffer, Byte> grandes;
     long count;
 
     public Memory() {
-        this.table = new HashMap<Integer,Boolean>();
+        this(1 << 10);
+    }
+
+    /**
+     * @param capacidad número de tableros que se espera guardar
+     */
+    public Memory(int capacidad) {
+        int tam = Integer.highestOneBit(Math.max(16, capacidad) * 2 - 1) * 2;
+        this.table = new long[tam];
+        Arrays.fill(this.table, LIBRE);
+        this.padres = new byte[tam];
+        this.mascara = tam - 1;
         this.count = 0;
     }
 
+    /**
+     * Mira si el tablero ya está en la tabla y si no lo añade junto con el
+     * movimiento a su padre (puzzle.padre).
+     *
+     * @param puzzle tablero a buscar
+     * @return si ya se había visto
+     */
     public boolean isViewed(NPuzzle puzzle){
-        int hash =puzzle.tablero.hashCode();
-
-        boolean status = this.table.getOrDefault(hash, false);
-        if (status){
-            return true;
-        }else{
-            this.table.put(hash,true);
+        if (puzzle.tableroGrande != null) {
+            if (this.grandes == null) this.grandes = new HashMap<>();
+            ByteBuffer clave = ByteBuffer.wrap(puzzle.tableroGrande.clone());
+            if (this.grandes.putIfAbsent(clave, (byte) puzzle.padre) != null)
+                return true;
             count++;
             return false;
         }
+        return isViewed(puzzle.clave(), puzzle.padre);
+    }
+
+    /**
+     * Mira si una clave ya está en la tabla y si no la añade
+     *
+     * @param clave clave exacta del tablero
+     * @param padre movimiento que lleva al padre del tablero
+     * @return si ya se había visto
+     */
+    public boolean isViewed(long clave, int padre){
+        int i = posicion(clave);
+        if (this.table[i] == clave)
+            return true;
+        this.table[i] = clave;
+        this.padres[i] = (byte) padre;
+        count++;
+        if (count * 2 > this.table.length) crece();
+        return false;
+    }
+
+    /**
+     * Mira si el tablero está en la tabla, sin añadirlo
+     *
+     * @param puzzle tablero a buscar
+     * @return si está en la tabla
+     */
+    public boolean contains(NPuzzle puzzle){
+        return padre(puzzle) != -1;
+    }
+
+    /**
+     * Devuelve el movimiento al padre guardado para un tablero
+     *
+     * @param puzzle tablero a buscar
+     * @return movimiento al padre, o -1 si el tablero no está en la tabla
+     */
+    public int padre(NPuzzle puzzle){
+        if (puzzle.tableroGrande != null) {
+            Byte padre = this.grandes == null ? null
+                    : this.grandes.get(ByteBuffer.wrap(puzzle.tableroGrande));
+            return padre == null ? -1 : padre;
+        }
+        return padre(puzzle.clave());
+    }
+
+    /**
+     * Devuelve el movimiento al padre guardado para una clave
+     *
+     * @param clave clave exacta del tablero
+     * @return movimiento al padre, o -1 si la clave no está en la tabla
+     */
+    public int padre(long clave){
+        int i = posicion(clave);
+        return this.table[i] == clave ? this.padres[i] : -1;
+    }
+
+    /**
+     * Busca la casilla de la tabla con la clave, o la primera libre en su
+     * secuencia de sondeo lineal.
+     */
+    private int posicion(long clave) {
+        int i = mezcla(clave) & this.mascara;
+        long actual;
+        while ((actual = this.table[i]) != LIBRE && actual != clave)
+            i = (i + 1) & this.mascara;
+        return i;
+    }
+
+    private static int mezcla(long clave) {
+        clave ^= clave >>> 33;
+        clave *= 0xff51afd7ed558ccdL;
+        clave ^= clave >>> 33;
+        return (int) clave;
+    }
+
+    private void crece() {
+        long[] viejas = this.table;
+        byte[] viejosPadres = this.padres;
+        this.table = new long[viejas.length * 2];
+        Arrays.fill(this.table, LIBRE);
+        this.padres = new byte[this.table.length];
+        this.mascara = this.table.length - 1;
+        for (int j = 0; j < viejas.length; j++)
+            if (viejas[j] != LIBRE) {
+                int i = posicion(viejas[j]);
+                this.table[i] = viejas[j];
+                this.padres[i] = viejosPadres[j];
+            }
     }
 
     @Override
@@ -7,6 +7,9 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -24,9 +27,16 @@ public class NPuzzle {
     int n;
 
     /**
-     * Tablero de juego
+     * Tablero de juego empaquetado en un long, 4 bits por casilla (casilla i en
+     * los bits 4i..4i+3). Se usa cuando n <= MAX_EMPAQUETADO.
      */
-    ArrayList<Integer> tablero;
+    long tablero;
+
+    /**
+     * Tablero de juego para tamaños mayores, un byte por casilla. Es null cuando
+     * el tablero cabe empaquetado en un long.
+     */
+    byte[] tableroGrande;
 
     /**
      * Movimiento para llegar al nodo padre, si es ! de 1,2,3,4 no lo sabemos
@@ -44,14 +54,37 @@ public class NPuzzle {
     int h;
 
     /**
-     * Raiz de n. Estatico, siempre el mismo valor en un mismo juego
+     * Posición del hueco
+     */
+    int posicionHueco;
+
+    /**
+     * Tablas precalculadas para el tamaño de este tablero
      */
-    static int raiz;
+    Geometry geometria;
 
     /**
-     * Posición del hueco
+     * Heurística usada para calcular y actualizar h. Por defecto la distancia
+     * Manhattan.
      */
-    int posicionHueco;
+    Heuristic funcionHeuristica = Heuristic.MANHATTAN;
+
+    /**
+     * Datos que la heurística guarda en cada nodo para actualizarse sin
+     * recorrer el tablero (la walking distance guarda aquí sus dos tablas)
+     */
+    long estadoHeuristica;
+
+    /**
+     * Estadísticas de la última búsqueda lanzada desde este tablero
+     */
+    SearchStats estadisticas;
+
+    /**
+     * Plazo de las búsquedas lanzadas desde este tablero; si es null cada
+     * búsqueda tiene el plazo por defecto desde que empieza
+     */
+    Deadline plazo;
 
     /**
      * CTes. para las direcciones del hueco
@@ -60,6 +93,17 @@ public class NPuzzle {
     public static final int ABAJO = 2;
     public static final int DERECHA = 3;
     public static final int IZQUIERDA = 4;
+
+    /**
+     * Mayor n cuyo tablero cabe en un long (16 casillas de 4 bits)
+     */
+    public static final int MAX_EMPAQUETADO = 15;
+
+    /**
+     * Mayor n admitido: en los tableros grandes cada ficha ocupa un byte sin
+     * signo (0..255)
+     */
+    public static final int MAX_N = 255;
     
     
     
@@ -73,34 +117,31 @@ public class NPuzzle {
      */
     public NPuzzle(String fichero, int n) {
 
-        NPuzzle.raiz = (int)Math.sqrt(n+1);
-
         //Guardamos el n si es correcto
-        if (Math.sqrt(n + 1) != Math.round(Math.sqrt(n + 1))) {
+        if (Math.sqrt(n + 1) != Math.round(Math.sqrt(n + 1)) || n > MAX_N) {
             System.out.println("ERROR: Imposible usar n=" + n + " Usando n=8");
             this.n = 8;
         } else
             this.n = n;
-
-        //Ahora obtenemos el tablero
-        tablero = new ArrayList<>();
+        this.geometria = Geometry.de(this.n);
 
         //Leemos el tablero de un fichero y si no podemos lo generamos 
         //aleatoriamente
         try {
             int number,i=0;
+            int[] casillas = new int[this.n + 1];
             Scanner scanner = new Scanner(new File(fichero));
-            while(scanner.hasNextInt()){
+            while(scanner.hasNextInt() && i < casillas.length){
                 number = scanner.nextInt();
-                tablero.add(number);
-                if (number == 0) this.posicionHueco = i;
+                casillas[i] = number;
                 i++;
             }
+            cargaTablero(casillas);
         } catch (FileNotFoundException ex) {
             Logger.getLogger(NPuzzle.class.getName()).log(Level.SEVERE, null, ex);
             //Si ha falado la lectura del fichero,
             //creamos un tablero con posiciones aleatorias
-            tablero = generaPermutacion(n + 1);
+            cargaTablero(generaPermutacion(this.n + 1));
         }
 
         //Iniciamos el padre del nodo a 0
@@ -120,17 +161,35 @@ public class NPuzzle {
      */
     public NPuzzle(int n) {
 
-        NPuzzle.raiz = (int)Math.sqrt(n+1);
-
         //Guardamos el n si es correcto
-        if (Math.sqrt(n + 1) != Math.round(Math.sqrt(n + 1))) {
+        if (Math.sqrt(n + 1) != Math.round(Math.sqrt(n + 1)) || n > MAX_N) {
             System.out.println("ERROR: Imposible usar n=" + n + " Usando n=8");
             this.n = 8;
         } else
             this.n = n;
+        this.geometria = Geometry.de(this.n);
         //Creamos un tablero con posiciones aleatorias
-        tablero = generaPermutacion(n + 1);
+        cargaTablero(generaPermutacion(this.n + 1));
+
+        //Iniciamos el padre del nodo a 0
+        this.padre = 0;
+        //Iniciamos el costo del nodo a 0
+        this.g = 0;
+        //Iniciamos la heuristica del nodo
+        this.h = heuristica();
+    }
+ /*---------------------------------------------------------------------------*/
 
+    /**
+     * Constructor para un tablero dado casilla a casilla.
+     *
+     * @param n        indica el tamaño del tablero. Lo rormal 8 ó 15 (8-puzzle/15puzzle)
+     * @param casillas contenido de las n+1 casillas (0 es el hueco)
+     */
+    public NPuzzle(int n, int[] casillas) {
+        this.n = n;
+        this.geometria = Geometry.de(n);
+        cargaTablero(casillas);
         //Iniciamos el padre del nodo a 0
         this.padre = 0;
         //Iniciamos el costo del nodo a 0
@@ -147,9 +206,12 @@ public class NPuzzle {
      */
     public NPuzzle(NPuzzle puzzle) {
         this.n = puzzle.n;
-        this.tablero = new ArrayList<>(this.n + 1);
-        for (int i = 0; i < this.n + 1; i++)
-            this.tablero.add(puzzle.tablero.get(i));
+        this.geometria = puzzle.geometria;
+        this.funcionHeuristica = puzzle.funcionHeuristica;
+        //El tablero empaquetado se copia con una sola asignación
+        this.tablero = puzzle.tablero;
+        if (puzzle.tableroGrande != null)
+            this.tableroGrande = puzzle.tableroGrande.clone();
 
         this.posicionHueco = puzzle.posicionHueco;
         //Iniciamos el padre del nodo 
@@ -158,6 +220,7 @@ public class NPuzzle {
         this.g = puzzle.g;
         //Iniciamos la heuristica del nodo
         this.h = puzzle.h;
+        this.estadoHeuristica = puzzle.estadoHeuristica;
     }
     /*---------------------------------------------------------------------------*/
 
@@ -176,22 +239,142 @@ public class NPuzzle {
     /*---------------------------------------------------------------------------*/
     /**
      * Este procedimiento genera una permutación aleatorio de tamaño n y lo
-     * devuelve en un ArrayList.
+     * devuelve en un array.
      *
      * @param n tamaño de la permutación
-     * @return ArrayList donde se alamacena la permutación
+     * @return array donde se alamacena la permutación
      */
-    final ArrayList<Integer> generaPermutacion(int n) {
+    final int[] generaPermutacion(int n) {
         ArrayList<Integer> permutacion = new ArrayList<>(n);
         //Generamos los números de la permutación
         for (int i = 0; i < n; i++)
             permutacion.add(i);
         //Los mezclamos y los devolvemos
         java.util.Collections.shuffle(permutacion);
-        int hueco=0;
-        while (permutacion.get(hueco)!=0) hueco++;
-        this.posicionHueco = hueco;
-        return permutacion;
+        int[] casillas = new int[n];
+        for (int i = 0; i < n; i++)
+            casillas[i] = permutacion.get(i);
+        return casillas;
+    }
+    /*---------------------------------------------------------------------------*/
+    /**
+     * Guarda las casillas en la representación compacta del tablero (long si
+     * cabe, byte[] si no) y localiza el hueco.
+     *
+     * @param casillas contenido del tablero, casilla a casilla
+     * @throws RuntimeException si n es mayor que MAX_N
+     */
+    final void cargaTablero(int[] casillas) {
+        if (this.n > MAX_N) throw new RuntimeException("n=" + this.n + " no cabe en el tablero (máximo " + MAX_N + ")");
+        this.tablero = 0;
+        this.tableroGrande = this.n > MAX_EMPAQUETADO ? new byte[this.n + 1] : null;
+        for (int i = 0; i < this.n + 1; i++)
+            ponCasilla(i, casillas[i]);
+        this.posicionHueco = buscarHueco();
+    }
+    /*---------------------------------------------------------------------------*/
+    /**
+     * Devuelve la ficha que hay en una casilla del tablero
+     *
+     * @param i posición de la casilla
+     * @return ficha en la casilla (0 es el hueco)
+     */
+    final int casilla(int i) {
+        if (this.tableroGrande == null)
+            return (int) (this.tablero >>> (i << 2)) & 0xF;
+        return this.tableroGrande[i] & 0xFF;
+    }
+    /*---------------------------------------------------------------------------*/
+    /**
+     * Coloca una ficha en una casilla del tablero
+     *
+     * @param i     posición de la casilla
+     * @param valor ficha a colocar
+     */
+    private void ponCasilla(int i, int valor) {
+        if (this.tableroGrande == null) {
+            int desp = i << 2;
+            this.tablero = (this.tablero & ~(0xFL << desp)) | ((long) valor << desp);
+        } else
+            this.tableroGrande[i] = (byte) valor;
+    }
+    /*---------------------------------------------------------------------------*/
+    /**
+     * Devuelve una clave exacta (sin colisiones) del tablero: el rango de la
+     * permutación en el 8-puzzle, que es denso, y el propio tablero empaquetado
+     * en el resto. Sólo tiene sentido si el tablero cabe en un long.
+     *
+     * @return clave del tablero
+     */
+    final long clave() {
+        if (this.n == 8) return rango(this.tablero, 9);
+        return this.tablero;
+    }
+    /*---------------------------------------------------------------------------*/
+    /**
+     * Calcula el rango (código de Lehmer) de la permutación guardada en un
+     * tablero empaquetado. Es una biyección entre los tableros y 0..casillas!-1.
+     *
+     * @param tablero  tablero empaquetado, 4 bits por casilla
+     * @param casillas número de casillas
+     * @return rango de la permutación
+     */
+    static int rango(long tablero, int casillas) {
+        int rango = 0, usadas = 0;
+        for (int i = 0; i < casillas; i++) {
+            int v = (int) (tablero >>> (i << 2)) & 0xF;
+            //fichas menores que v que aún no han salido
+            int menores = v - Integer.bitCount(usadas & ((1 << v) - 1));
+            rango = rango * (casillas - i) + menores;
+            usadas |= 1 << v;
+        }
+        return rango;
+    }
+    /*---------------------------------------------------------------------------*/
+    /**
+     * Devuelve la casilla en la que está una ficha. En el tablero empaquetado
+     * se localiza de una vez el nibble igual a la ficha (el menor nibble a cero
+     * de tablero^ficha), sin recorrer el tablero.
+     *
+     * @param ficha ficha a buscar (1..n)
+     * @return posición de la ficha
+     */
+    final int posicionFicha(int ficha) {
+        if (this.tableroGrande == null)
+            return posicionFicha(this.tablero, ficha);
+        int i = 0;
+        while ((this.tableroGrande[i] & 0xFF) != ficha) i++;
+        return i;
+    }
+
+    /**
+     * Posición de una ficha en un tablero empaquetado. También sirve para el
+     * hueco (ficha 0): los nibbles sobrantes del 8-puzzle también valen 0, pero
+     * están detrás de todas las casillas y se devuelve el primero.
+     *
+     * @param tablero tablero empaquetado
+     * @param ficha   ficha a buscar
+     * @return posición de la ficha
+     */
+    static int posicionFicha(long tablero, int ficha) {
+        long x = tablero ^ (ficha * 0x1111111111111111L);
+        long ceros = (x - 0x1111111111111111L) & ~x & 0x8888888888888888L;
+        return Long.numberOfTrailingZeros(ceros) >>> 2;
+    }
+
+    /**
+     * Mueve el hueco en un tablero empaquetado: lleva la ficha de destino al
+     * hueco y deja a 0 los 4 bits de destino.
+     *
+     * @param tablero tablero empaquetado
+     * @param hueco   posición del hueco
+     * @param destino nueva posición del hueco
+     * @return el tablero tras el movimiento
+     */
+    static long mueveEmpaquetado(long tablero, int hueco, int destino) {
+        int desp = destino << 2;
+        long ficha = (tablero >>> desp) & 0xFL;
+        return (tablero & ~(0xFL << desp)) | (ficha << (hueco << 2));
     }
     /*---------------------------------------------------------------------------*/
     /**
@@ -200,7 +383,7 @@ public class NPuzzle {
      */
     private int  buscarHueco(){
         int hueco=0;
-        while (this.tablero.get(hueco)!=0) hueco++;
+        while (casilla(hueco)!=0) hueco++;
         return hueco;
     }
     /*---------------------------------------------------------------------------*/
@@ -215,6 +398,42 @@ public class NPuzzle {
     }
     /*---------------------------------------------------------------------------*/
 
+    /**
+     * Cambia la heurística de este tablero y de todos los que se generen a
+     * partir de él (Manhattan, Hamming, conflicto lineal, walking distance,
+     * bases de datos de patrones...).
+     *
+     * @param heuristica heurística a usar
+     */
+    public void usaHeuristica(Heuristic heuristica) {
+        this.funcionHeuristica = heuristica;
+        this.h = heuristica();
+    }
+    /*---------------------------------------------------------------------------*/
+
+    /**
+     * Estadísticas de la última búsqueda lanzada desde este tablero
+     */
+    public SearchStats estadisticas() {
+        return this.estadisticas;
+    }
+
+    /**
+     * Fija el plazo de las búsquedas lanzadas desde este tablero. El plazo se
+     * puede cancelar desde otro hilo para pararlas.
+     *
+     * @param plazo plazo a usar, o null para el de por defecto
+     */
+    public void usaPlazo(Deadline plazo) {
+        this.plazo = plazo;
+    }
+
+    private Deadline plazo() {
+        return this.plazo != null ? this.plazo : Deadline.porDefecto();
+    }
+
+    /*---------------------------------------------------------------------------*/
+
     /**
      * Esta función devuelve la profundida nodo
      *
@@ -238,48 +457,24 @@ public class NPuzzle {
 
         for (i = 0, distancia = 0; i < this.n + 1; i++)
             //si encontramos una ficha mal aumentamos la distancia.
-            if (this.tablero.get(i) != i)
+            if (casilla(i) != i)
                 distancia++;
         return distancia;
     }
     /*---------------------------------------------------------------------------*/
 
     /**
-     * Esta función devuelve un valor heurístico para el tablero dado basado en la
-     * distancia Manhattan, que nos da la suma de las distancias desde la posición
-     * actual de cada ficha hasta su posición original.
+     * Esta función devuelve un valor heurístico para el tablero dado, calculado
+     * con la heurística elegida. Por defecto es la distancia Manhattan, que nos
+     * da la suma de las distancias desde la posición actual de cada ficha hasta
+     * su posición original.
+     * Sólo se usa para el cálculo inicial: al mover, h se actualiza de forma
+     * incremental en moveHoleTo.
      *
-     * @return distancia de Hamming del puzzle
+     * @return valor heurístico del puzzle
      */
     public int heuristica() {
-        int i, distancia;
-        int fila_actual = 1, columna_actual = 1; /*Posición de la casilla que estamos viendo*/
-        int fila = 1, columna = 1; /*Posición donde debería estar la casilla*/
-        int c; /*Casilla actual*/
-        int ancho = (int) Math.sqrt(this.n + 1);/*Ancho del tablero*/
-
-        for (i = 0, distancia = 0; i < this.n + 1; i++) {
-            c = this.tablero.get(i);
-
-            if (c != 0) {
-                /*Buscamos cual es la casilla que debería ocupar*/
-                fila = 1;
-                while (!(c >= ancho * (fila - 1) && c < ancho * fila)) fila++;
-                columna = (c % ancho) + 1;
-
-                /*Añadimos la distancia*/
-                distancia += Math.abs(fila - fila_actual) + Math.abs(columna - columna_actual);
-            }
-
-            /*Nos vamos a la siguiente casilla*/
-            columna_actual++;
-            if (columna_actual > ancho) {
-                columna_actual = 1;
-                fila_actual++;
-            }
-        }
-
-        return distancia;
+        return this.funcionHeuristica.evalua(this);
     }
 
     /*---------------------------------------------------------------------------*/
@@ -293,7 +488,7 @@ public class NPuzzle {
         String out = n + "-Puzzle g=" + this.g + " h=" + this.h + "{\n"; //Mostramos el n
         //Mostramos el tablero
         for (int i = 0; i <= n; i++) {
-            int x = tablero.get(i);
+            int x = casilla(i);
             if (x != 0) out += (x + " ");
             else out += ("_ ");
             if ((i + 1) % filas == 0) out += ("\n");
@@ -311,7 +506,7 @@ public class NPuzzle {
     public boolean objetivo() {
         for (int i = 0; i < n; i++)
             //si encontramos una ficha mal colocada no está terminado
-            if (this.tablero.get(i) != i) {
+            if (casilla(i) != i) {
                 return false;
             }
         return true;
@@ -319,53 +514,90 @@ public class NPuzzle {
     /*---------------------------------------------------------------------------*/
 
     /**
-     * Esta función nos dice si el n-puzzle tiene solución o no. Un tablero será
-     * resoluble si :
-     * -Si el ancho del tablero es impar (p.e. 8-puzzle) si el número de
-     * inversiones es par el tablero es resoluble.
-     * -Si el ancho del tablero es par (p.e. 15-puzzle) si el número de
-     * inversiones + la fila donde está el hueco tiene la misma paridad
-     * que el tablero solución (que tiene 0 inversiones + fila donde está
-     * el hueco), entonces el tablero es resoluble.
-     * Nota: Se cuenta el número de fila desde arriba. Una inversión es cuando
-     * a está antes que b y a>b. Para calcular las inversiones se descargta el
-     * hueco y se disponen todas las piezas consecutivamente (como en un vector).
+     * Esta función nos dice si el n-puzzle tiene solución o no. Cada
+     * movimiento intercambia el hueco con una ficha, así que cambia a la vez
+     * la paridad de la permutación del tablero (contando el hueco) y la de la
+     * distancia Manhattan del hueco a su casilla objetivo (la 0). Como en el
+     * objetivo las dos son pares, un tablero es resoluble si y sólo si ambas
+     * paridades coinciden. La paridad de la permutación se saca de su
+     * descomposición en ciclos: casillas - número de ciclos.
      *
      * @return si tiene solución o no.
      */
     boolean resoluble() {
-        int i, j;
-        int inversiones = 0;
-        int pos0 = 0, fila = 1;
-        int ancho = (int) Math.sqrt(this.n + 1);/*Ancho del tablero*/
-
- 
-	/*Calculamos el número de inversiones del puzzle, una inversión es
-	  cuando a está antes que b y a>b (descartamos el hueco)*/
-        for (i = 0; i < this.n; i++)
-            if (tablero.get(i) != 0)
-                for (j = i + 1; j < this.n + 1; j++) {
-                    if (tablero.get(i) > tablero.get(j) && tablero.get(j) != 0)
-                        inversiones++;
-                }
+        int casillas = this.n + 1;
+        boolean[] visto = new boolean[casillas];
+        int ciclos = 0;
+        for (int i = 0; i < casillas; i++) {
+            if (visto[i]) continue;
+            ciclos++;
+            for (int j = i; !visto[j]; j = casilla(j)) visto[j] = true;
+        }
+        int ancho = this.geometria.ancho;
+        int distanciaHueco = this.posicionHueco / ancho + this.posicionHueco % ancho;
+        return ((casillas - ciclos) & 1) == (distanciaHueco & 1);
+    }
 
-        /*Si el ancho es impar, entonces el número de inversiones en un tablero
-	  resoluble es par*/
-        if (ancho % 2 != 0) {
-            return inversiones % 2 == 0;
-        } else {
-            /*Caso de tablero impar*/
-
-            /*Buscamos la posición del hueco*/
-            for (pos0 = 0; tablero.get(pos0) != 0 && pos0 < n + 1; pos0++) ;
-	    /*Buscamos la fila en la que está el hueco*/
-            fila = 1;
-            while (!(pos0 >= ancho * (fila - 1) && pos0 < ancho * fila)) fila++;
-            /*Nuestro tablero solución tiene paridad impar, pues el 0 lo tiene
-            en la primera fila, por tanto si las inversiones+ la fila del hueco es
-            impar tiene solución*/
-            return (inversiones + fila) % 2 != 0;
+    /**
+     * Como resoluble(), sobre un tablero dado casilla a casilla, sin crear el
+     * NPuzzle
+     *
+     * @param casillas contenido de las n+1 casillas (0 es el hueco)
+     * @param ancho    ancho del tablero
+     * @return si tiene solución o no.
+     */
+    static boolean resoluble(int[] casillas, int ancho) {
+        boolean[] visto = new boolean[casillas.length];
+        int ciclos = 0, hueco = 0;
+        for (int i = 0; i < casillas.length; i++) {
+            if (casillas[i] == 0) hueco = i;
+            if (visto[i]) continue;
+            ciclos++;
+            for (int j = i; !visto[j]; j = casillas[j]) visto[j] = true;
+        }
+        return ((casillas.length - ciclos) & 1) == ((hueco / ancho + hueco % ancho) & 1);
+    }
+    /*---------------------------------------------------------------------------*/
+
+    /**
+     * Genera un tablero aleatorio que siempre tiene solución: se mezclan las
+     * casillas (Fisher-Yates) y, si no es resoluble, se intercambian dos fichas
+     * (no el hueco), lo que cambia la paridad de la permutación sin mover el
+     * hueco. Todos los tableros resolubles salen con la misma probabilidad.
+     *
+     * @param n         tamaño del problema (8, 15, 24...)
+     * @param aleatorio generador, con semilla si se quieren repetir los tableros
+     * @return contenido de las n+1 casillas
+     */
+    static int[] permutacionResoluble(int n, Random aleatorio) {
+        int[] casillas = new int[n + 1];
+        for (int i = 0; i <= n; i++) casillas[i] = i;
+        for (int i = n; i > 0; i--) {
+            int j = aleatorio.nextInt(i + 1);
+            int aux = casillas[i];
+            casillas[i] = casillas[j];
+            casillas[j] = aux;
+        }
+        if (!resoluble(casillas, (int) Math.sqrt(n + 1))) {
+            //las dos primeras casillas que no son el hueco
+            int a = casillas[0] != 0 ? 0 : 1;
+            int b = casillas[a + 1] != 0 ? a + 1 : a + 2;
+            int aux = casillas[a];
+            casillas[a] = casillas[b];
+            casillas[b] = aux;
         }
+        return casillas;
+    }
+
+    /**
+     * Tablero aleatorio con solución, sin tener que generar y descartar
+     *
+     * @param n         tamaño del problema (8, 15, 24...)
+     * @param aleatorio generador, con semilla si se quieren repetir los tableros
+     * @return el tablero, con g=0 y sin padre
+     */
+    public static NPuzzle aleatorioResoluble(int n, Random aleatorio) {
+        return new NPuzzle(n, permutacionResoluble(n, aleatorio));
     }
 
     /*---------------------------------------------------------------------------*/
@@ -391,25 +623,38 @@ public class NPuzzle {
         }
 
         //Finalemente, comparamos tablero
-        for (int i = 0; i < n; i++)
-            //si encontramos una ficha distinta, son distintos
-            if (!Objects.equals(this.tablero.get(i), other.tablero.get(i)))
-                return false;
+        return this.tablero == other.tablero
+                && Arrays.equals(this.tableroGrande, other.tableroGrande);
+    }
 
-        return true;
+    @Override
+    public int hashCode() {
+        if (this.tableroGrande == null)
+            return Long.hashCode(this.tablero);
+        return Arrays.hashCode(this.tableroGrande);
     }
 
     /*---------------------------------------------------------------------------*/
     public void swap(int i, int j) {
-        Integer aux = tablero.get(i);
-        tablero.set(i, tablero.get(j));
-        tablero.set(j, aux);
+        int aux = casilla(i);
+        ponCasilla(i, casilla(j));
+        ponCasilla(j, aux);
+        if (aux == 0) this.posicionHueco = j;
+        else if (casilla(i) == 0) this.posicionHueco = i;
     }
     /*---------------------------------------------------------------------------*/
     private void moveHoleTo(int dest){
-        tablero.set(this.posicionHueco, tablero.get(dest));
-        tablero.set(dest,0);
+        int ficha = casilla(dest), hueco = this.posicionHueco;
+        if (this.tableroGrande == null) {
+            this.tablero = mueveEmpaquetado(this.tablero, hueco, dest);
+        } else {
+            this.tableroGrande[hueco] = this.tableroGrande[dest];
+            this.tableroGrande[dest] = 0;
+        }
         this.posicionHueco = dest;
+        //Sólo cambia de sitio la ficha de dest, así que la heurística se
+        //corrige a partir de ese movimiento
+        this.h = this.funcionHeuristica.actualiza(this, this.h, ficha, dest, hueco);
     }
     /*---------------------------------------------------------------------------*/
     /**
@@ -435,60 +680,15 @@ public class NPuzzle {
      */
     public boolean mueve(int movimiento) {
 
-        //Cogemos la raiz de n+1 pues nos hará falta para mirar movimientos válidos.
-
-        if (movimiento==IZQUIERDA) {
-            if (this.posicionHueco==0 || this.posicionHueco%raiz==0)
-                return false;
-            else {
-//                this.swap(this.posicionHueco-1,this.posicionHueco);
-                this.moveHoleTo(this.posicionHueco-1);
-                this.g++; //actualizamos función costo
-                this.h=heuristica(); //actualizamos función heurística
-                this.padre=inverso(movimiento);
-                return true;
-            }
-        } else if (movimiento==DERECHA) {
-            if (this.posicionHueco==n || (this.posicionHueco+1)%raiz==0)
-                return false;
-            else {
-//                this.swap(this.posicionHueco+1,this.posicionHueco);
-                this.moveHoleTo(this.posicionHueco+1);
-                this.g++; //actualizamos función costo
-                this.h=heuristica(); //actualizamos función heurística
-                this.padre=inverso(movimiento);
-                return true;
-            }
-
-        } else if (movimiento==ARRIBA) {
-            if (this.posicionHueco>=0 && this.posicionHueco<raiz)
-                return false;
-            else {
-//                this.swap(this.posicionHueco-raiz,this.posicionHueco);
-                this.moveHoleTo(this.posicionHueco-raiz);
-                this.g++; //actualizamos función costo
-                this.h=heuristica(); //actualizamos función heurística
-                this.padre=inverso(movimiento);
-                return true;
-            }
-
-        } else if (movimiento==ABAJO) {
-            if (this.posicionHueco<=n && this.posicionHueco>=raiz*(raiz-1))
-                return false;
-            else {
-//                this.swap(this.posicionHueco+raiz,this.posicionHueco);
-                this.moveHoleTo(this.posicionHueco+raiz);
-                this.g++; //actualizamos función costo
-                this.h=heuristica(); //actualizamos función heurística
-                this.padre=inverso(movimiento);
-                return true;
-            }
-
-        }
-
-        //Movimiento erróneo
-        return false;
+        //la tabla de destinos ya sabe qué movimientos son válidos en cada casilla
+        int destino = this.geometria.destino(this.posicionHueco, movimiento);
+        if (destino < 0)
+            return false; //Movimiento erróneo
 
+        this.moveHoleTo(destino);
+        this.g++; //actualizamos función costo (h lo actualiza moveHoleTo)
+        this.padre=inverso(movimiento);
+        return true;
     }
     /*---------------------------------------------------------------------------*/
     /**
@@ -497,35 +697,14 @@ public class NPuzzle {
      * @return
      */
     public boolean mueveInseguro(int movimiento) {
+        if (movimiento < ARRIBA || movimiento > IZQUIERDA)
+            //Movimiento erróneo
+            throw new Error("Movimiento invalido");
 
-        switch(movimiento){
-            case IZQUIERDA:
-                this.moveHoleTo(this.posicionHueco-1);
-                this.g++; //actualizamos función costo
-                this.h=heuristica(); //actualizamos función heurística
-                this.padre=inverso(movimiento);
-                return true;
-            case DERECHA:
-                this.moveHoleTo(this.posicionHueco+1);
-                this.g++; //actualizamos función costo
-                this.h=heuristica(); //actualizamos función heurística
-                this.padre=inverso(movimiento);
-                return true;
-            case ARRIBA:
-                this.moveHoleTo(this.posicionHueco-raiz);
-                this.g++; //actualizamos función costo
-                this.h=heuristica(); //actualizamos función heurística
-                this.padre=inverso(movimiento);
-                return true;
-            case ABAJO:
-                this.moveHoleTo(this.posicionHueco+raiz);
-                this.g++; //actualizamos función costo
-                this.h=heuristica(); //actualizamos función heurística
-                this.padre=inverso(movimiento);
-                return true;
-        }
-        //Movimiento erróneo
-        throw new Error("Movimiento invalido");
+        this.moveHoleTo(destino(movimiento));
+        this.g++; //actualizamos función costo (h lo actualiza moveHoleTo)
+        this.padre=inverso(movimiento);
+        return true;
     }
     /*---------------------------------------------------------------------------*/
     /**
@@ -533,154 +712,152 @@ public class NPuzzle {
      * @return lista con los posibles movimientos
      */
     public ArrayList<Integer> posiblesMovimientos(){
-        ArrayList<Integer> posibles = new ArrayList<Integer>();
-
-        if (!(this.posicionHueco==0 || this.posicionHueco%raiz==0)) posibles.add(IZQUIERDA);
-        if (!(this.posicionHueco==n || (this.posicionHueco+1)%raiz==0)) posibles.add(DERECHA);
-        if (!(this.posicionHueco>=0 && this.posicionHueco<raiz)) posibles.add(ARRIBA);
-        if (!(this.posicionHueco<=n && this.posicionHueco>=raiz*(raiz-1))) posibles.add(ABAJO);
-
+        int[] validos = movimientosPosibles();
+        ArrayList<Integer> posibles = new ArrayList<Integer>(validos.length);
+        for (int movimiento : validos) posibles.add(movimiento);
         return posibles;
     }
+    /*---------------------------------------------------------------------------*/
+    /**
+     * Movimientos válidos del hueco, sacados de la tabla de la geometría sin
+     * crear objetos. El array es compartido por todos los tableros del mismo
+     * tamaño y no se debe modificar.
+     *
+     * @return movimientos válidos, en el mismo orden que posiblesMovimientos
+     */
+    final int[] movimientosPosibles() {
+        return this.geometria.movimientos[this.posicionHueco];
+    }
+    /*---------------------------------------------------------------------------*/
+    /**
+     * Mira si el hueco se puede mover en una dirección, sin crear objetos
+     *
+     * @param movimiento dirección del movimiento del hueco
+     * @return si el movimiento es válido
+     */
+    final boolean puedeMover(int movimiento) {
+        return (this.geometria.mascaras[this.posicionHueco] & (1 << movimiento)) != 0;
+    }
+    /*---------------------------------------------------------------------------*/
+    /**
+     * Casilla a la que va el hueco con un movimiento (que debe ser válido)
+     *
+     * @param movimiento dirección del movimiento del hueco
+     * @return nueva posición del hueco
+     */
+    final int destino(int movimiento) {
+        return this.geometria.destinos[this.posicionHueco * 5 + movimiento];
+    }
 
     /**
      * Este método realiza una búsqueda aleatoria de la solución de un
-     * n-puzzle, durante TMAX segundos.
+     * n-puzzle, hasta que vence el plazo: cada hilo del pool común da un paseo
+     * aleatorio y el primero que llega al objetivo para a los demás.
      *
-     * @return la lista de movimiento realizados para llegar al estado objetivo, si
-     * está vacía es que no se ha encontrado ninguna solución o el tablero pasado era
-     * el objetivo.
+     * @return la lista de movimiento realizados para llegar al estado objetivo
+     * (sin ciclos), si está vacía es que no se ha encontrado ninguna solución o
+     * el tablero pasado era el objetivo.
      */
     public ArrayList<Integer> busquedaAleatoria() {
+        return busquedaAleatoria(ForkJoinPool.commonPool(), new SplittableRandom());
+    }
 
-        int movimiento;
-        int movPadre = -1;/*Movimiento para llegar al padre*/
-        ArrayList<Integer> vistos = new ArrayList<>(); /*Lista de nodos vistos*/
-
-        long tiempo_inicial = System.currentTimeMillis();
-        while (!this.objetivo()) {
-            movimiento = (int) (Math.random() * 5);
-            if (movimiento != movPadre && this.mueve(movimiento)) {
-                vistos.add(0, movimiento);
-                movPadre = inverso(movimiento);
-            }
-
-            /*Si llevamos más de TMAX segundos, no hemos encontrado solución*/
-            double tiempo_total = (System.currentTimeMillis() - tiempo_inicial) / 1000.;
-            if (tiempo_total > 60/*TMAX*/) {
-                System.out.println("Vistos=" + vistos.size());
-                return new ArrayList<>();
-            }
-        }
-        return vistos;
+    public ArrayList<Integer> busquedaAleatoria(ForkJoinPool pool, SplittableRandom aleatorio) {
+        SearchStats stats = this.estadisticas = new SearchStats();
+        RandomSearch busqueda = new RandomSearch(this, pool, plazo(), false, aleatorio);
+        ArrayList<Integer> pasos = busqueda.resuelve(stats);
+        System.out.println("Nodos expandidos:" + stats.expandidos);
+        return stats.termina(pasos);
     }
     /*---------------------------------------------------------------------------*/
     /**
      Este método realiza una búsqueda aleatoria de la solución de un
-     n-puzzle, durante TMAX segundos.
+     n-puzzle, hasta que vence el plazo. Como busquedaAleatoria, pero los
+     paseos se reinician desde el origen con un límite de pasos que se dobla en
+     cada reinicio, y la mitad de los pasos acercan una ficha a su casilla.
      @return la lista de movimiento realizados para llegar al estado objetivo, si
      está vacía es que no se ha encontrado ninguna solución o el tablero pasado era
      el objetivo.
      */
     public ArrayList<Integer> busquedaAleatoriaMejorada() {
+        return busquedaAleatoriaMejorada(ForkJoinPool.commonPool(), new SplittableRandom());
+    }
 
-        int movimiento;
-        int movPadre=-1;/*Movimiento para llegar al padre*/
-        ArrayList<Integer> posibles = new ArrayList<>();
-        ArrayList<Integer> vistos=new ArrayList<>(); /*Lista de nodos vistos*/
-
-        long tiempo_inicial=System.currentTimeMillis();
-        while (!this.objetivo()) {
-            posibles = this.posiblesMovimientos();
-            movimiento = posibles.get((int)(Math.random()*posibles.size()));
-            if (movimiento!=movPadre && this.mueve(movimiento)) {
-                vistos.add(0,movimiento);
-                movPadre=inverso(movimiento);
-            }
-
-            /*Si llevamos más de TMAX segundos, no hemos encontrado solución*/
-            double tiempo_total=(System.currentTimeMillis()-tiempo_inicial);
-            if (tiempo_total>60000/*TMAX*/){
-                System.out.println("Vistos="+vistos.size());
-                return new ArrayList<>();
-            }
-        }
-        return vistos;
+    public ArrayList<Integer> busquedaAleatoriaMejorada(ForkJoinPool pool, SplittableRandom aleatorio) {
+        SearchStats stats = this.estadisticas = new SearchStats();
+        RandomSearch busqueda = new RandomSearch(this, pool, plazo(), true, aleatorio);
+        ArrayList<Integer> pasos = busqueda.resuelve(stats);
+        System.out.println("Nodos expandidos:" + stats.expandidos);
+        return stats.termina(pasos);
     }
     /*---------------------------------------------------------------------------*/
 
     /**
      * Este método devuelve el plan de movimientos seguidos desde el origen hasta el
-     * objetivo (que debería ser el primero de la lista).
+     * objetivo, siguiendo hacia atrás los movimientos al padre guardados en la
+     * memoria. Su coste es proporcional a la longitud de la solución.
      *
-     * @param lista  listado de nodos
-     * @param origen nodo original
+     * @param memoria tabla de visitados con el movimiento al padre de cada nodo
+     * @param final_  nodo alcanzado (normalmente el objetivo)
      * @return la lista con los movimientos.
      */
-    public ArrayList<Integer> plan(ArrayList<NPuzzle> lista, NPuzzle origen) {
-        ArrayList<Integer> movimientos = new ArrayList<>(lista.size()); /*Lista de nodos vistos*/
-        int tam = lista.size();
-        NPuzzle actual = new NPuzzle(lista.get(0));
-        while (!actual.equals(origen)) {
-            movimientos.add(0, inverso(actual.padre));
-            actual.mueve(actual.padre);
-            int pos = lista.indexOf(actual);
-            if (pos == -1) {
-                System.out.println("ERROR en plan");
-                System.exit(-1);
-            } else if (movimientos.size() > tam + 10) {
-
-                System.out.println("ERROR 2 en plan.");// Movs:"+movimientos);
-                System.exit(-1);
-            }
-            actual = new NPuzzle(lista.get(pos));
-            lista.remove(pos);
+    public ArrayList<Integer> plan(Memory memoria, NPuzzle final_) {
+        ArrayList<Integer> movimientos = new ArrayList<>(final_.g);
+        NPuzzle actual = new NPuzzle(final_);
+        while (!actual.equals(this)) {
+            int padre = memoria.padre(actual);
+            if (padre < ARRIBA || padre > IZQUIERDA || movimientos.size() > memoria.count)
+                throw new RuntimeException("ERROR en plan");
+            movimientos.add(inverso(padre));
+            actual.mueveInseguro(padre);
         }
+        Collections.reverse(movimientos);
         return movimientos;
     }
     /*---------------------------------------------------------------------------*/
 
     public ArrayList<Integer> busquedaPrimeroProfundidad(){
-        ArrayList<NPuzzle> abiertos = new ArrayList<>(),
-                cerrados= new ArrayList<>();
+        ArrayList<NPuzzle> abiertos = new ArrayList<>();
         Memory memoria = new Memory();
-        ArrayList<Integer> pasos = new ArrayList<>(),
-                posibles;
-        NPuzzle current, newPuzzle;
+        ArrayList<Integer> pasos = new ArrayList<>();
+        int[] posibles;
+        NPuzzle current = this, newPuzzle;
         boolean goal = false;
+        SearchStats stats = this.estadisticas = new SearchStats();
 
         memoria.isViewed(this);
         abiertos.add(this);
 
-        Timer timer = new Timer();
+        Deadline plazo = plazo();
+        long vueltas = 0;
         while (!goal){
-            //comprobar tiempo
-            if (timer.duration() > Main.TMAXmillis) return pasos;
+            //comprobar plazo
+            if (plazo.comprueba(++vueltas)) return stats.interrumpe(pasos);
 
             //seleccionar
-            try {
-                current = abiertos.get(0);
-            }catch (Error e){
-                return pasos;//abiertos está vacio -> no hay solución
-            }
+            if (abiertos.isEmpty()) return stats.termina(pasos);//abiertos está vacio -> no hay solución
+            current = abiertos.get(0);
             //comprobar si objetivo
             goal = current.objetivo();
 
             //expandir
-            posibles = current.posiblesMovimientos();
+            stats.expandidos++;
+            posibles = current.movimientosPosibles();
             for (int i : posibles){
                 newPuzzle = current.copiaYMueveInseguro(i);
+                stats.generados++;
+                stats.evaluaciones++;
                 if (!memoria.isViewed(newPuzzle)){
                     abiertos.add(1,newPuzzle);
-                }
+                } else stats.duplicados++;
             }
-            //mover current a cerrados.
-            abiertos.remove(current);
-            cerrados.add(0,current);
+            stats.abiertos(abiertos.size());
+            //sacar current de abiertos (su padre queda en memoria)
+            abiertos.remove(0);
         }
-        pasos = plan(cerrados, this);
+        pasos = plan(memoria, current);
         System.out.println(memoria);
-        return pasos;
+        return stats.termina(pasos);
     }
 
     public ArrayList<Integer> busquedaProfundidadIterativa(){
@@ -691,46 +868,52 @@ public class NPuzzle {
         return this.busquedaProfundidadIterativa(profundidadLimite,null);
     }
 
-    public ArrayList<Integer> busquedaProfundidadIterativa(int profundidadLimite, Timer timer){
-        ArrayList<NPuzzle> abiertos = new ArrayList<>(),
-                cerrados= new ArrayList<>();
+    public ArrayList<Integer> busquedaProfundidadIterativa(int profundidadLimite, Deadline plazo){
+        this.estadisticas = new SearchStats();
+        return this.busquedaProfundidadIterativa(profundidadLimite, plazo, this.estadisticas);
+    }
+
+    /**
+     * Cada iteración sigue acumulando en las estadísticas de la primera
+     */
+    private ArrayList<Integer> busquedaProfundidadIterativa(int profundidadLimite, Deadline plazo, SearchStats stats){
+        ArrayList<NPuzzle> abiertos = new ArrayList<>();
 
         Memory memoria = new Memory();
 
-        ArrayList<Integer> pasos = new ArrayList<>(),
-                posibles;
+        ArrayList<Integer> pasos = new ArrayList<>();
+        int[] posibles;
 
-        NPuzzle current, newPuzzle;
+        NPuzzle current = this, newPuzzle;
         boolean goal = false,
                 limiteAlcanzado = false;
 
         memoria.isViewed(this);
         abiertos.add(this);
 
-        if (timer == null)timer = new Timer();
+        if (plazo == null) plazo = plazo();
+        long vueltas = 0;
 
         while (!goal){
-            //comprobar tiempo
-            if (timer.duration() > Main.TMAXmillis) return pasos;
+            //comprobar plazo
+            if (plazo.comprueba(++vueltas)) return stats.interrumpe(pasos);
 
             //seleccionar
-            try {
-                current = abiertos.get(0);
-            }catch (Exception e){
+            if (abiertos.isEmpty()) {
                 if (limiteAlcanzado){
                     //limpiar memoria de objetos
                     abiertos = null;
-                    cerrados = null;
                     memoria = null;
                     current = null;
                     newPuzzle = null;
                     pasos = null;
                     posibles = null;
-                    return this.busquedaProfundidadIterativa(profundidadLimite+1, timer);
+                    return this.busquedaProfundidadIterativa(profundidadLimite+1, plazo, stats);
                 }else{
-                    return pasos;//abiertos está vacio -> no hay solución
+                    return stats.termina(pasos);//abiertos está vacio -> no hay solución
                 }
             }
+            current = abiertos.get(0);
             //comprobar si objetivo
             goal = current.objetivo();
 
@@ -738,51 +921,53 @@ public class NPuzzle {
                 limiteAlcanzado = true;
             }else{
                 //expandir
-                posibles = current.posiblesMovimientos();
+                stats.expandidos++;
+                posibles = current.movimientosPosibles();
                 for (int i : posibles){
                     newPuzzle = current.copiaYMueveInseguro(i);
+                    stats.generados++;
+                    stats.evaluaciones++;
                     if (!memoria.isViewed(newPuzzle)){
                         abiertos.add(1,newPuzzle);
-                    }
+                    } else stats.duplicados++;
                 }
+                stats.abiertos(abiertos.size());
             }
 
-            //mover current a cerrados.
-            abiertos.remove(current);
-            cerrados.add(0,current);
+            //sacar current de abiertos (su padre queda en memoria)
+            abiertos.remove(0);
         }
-        pasos = plan(cerrados, this);
+        pasos = plan(memoria, current);
         System.out.println(memoria);
-        return pasos;
+        return stats.termina(pasos);
     }
 
-    public ArrayList<Integer> busquedaProfundidadIterativaHibrida(int profundidadLimite, Timer timer){
+    public ArrayList<Integer> busquedaProfundidadIterativaHibrida(int profundidadLimite, Deadline plazo){
+        SearchStats stats = this.estadisticas = new SearchStats();
         ArrayList<NPuzzle> abiertos = new ArrayList<>(),
-                cerrados = new ArrayList<>(),
                 frontera = new ArrayList<>();
 
         Memory memoria = new Memory();
 
-        ArrayList<Integer> pasos = new ArrayList<>(),
-                posibles;
+        ArrayList<Integer> pasos = new ArrayList<>();
+        int[] posibles;
 
-        NPuzzle current, newPuzzle;
+        NPuzzle current = this, newPuzzle;
         boolean goal = false,
                 limiteAlcanzado = false;
 
         memoria.isViewed(this);
         abiertos.add(this);
 
-        if (timer == null)timer = new Timer();
+        if (plazo == null) plazo = plazo();
+        long vueltas = 0;
 
         while (!goal){
-            //comprobar tiempo
-            if (timer.duration() > Main.TMAXmillis) return pasos;
+            //comprobar plazo
+            if (plazo.comprueba(++vueltas)) return stats.interrumpe(pasos);
 
             //seleccionar
-            try {
-                current = abiertos.get(0);
-            }catch (Exception e){
+            if (abiertos.isEmpty()) {
                 if (limiteAlcanzado){
                     //limpiar memoria de objetos
                     abiertos = null;
@@ -790,11 +975,12 @@ public class NPuzzle {
                     newPuzzle = null;
                     pasos = null;
                     posibles = null;
-                    return this.busquedaPrimeroAnchura(frontera,cerrados,timer,memoria);
+                    return this.busquedaPrimeroAnchura(frontera,plazo,memoria,stats);
                 }else{
-                    return pasos;//abiertos está vacio -> no hay solución
+                    return stats.termina(pasos);//abiertos está vacio -> no hay solución
                 }
             }
+            current = abiertos.get(0);
             //comprobar si objetivo
             goal = current.objetivo();
 
@@ -804,188 +990,491 @@ public class NPuzzle {
                 frontera.add(current);
             }else{
                 //expandir
-                posibles = current.posiblesMovimientos();
+                stats.expandidos++;
+                posibles = current.movimientosPosibles();
                 for (int i : posibles){
                     newPuzzle = current.copiaYMueveInseguro(i);
+                    stats.generados++;
+                    stats.evaluaciones++;
                     if (!memoria.isViewed(newPuzzle)){
                         abiertos.add(1,newPuzzle);
-                    }
+                    } else stats.duplicados++;
                 }
-                cerrados.add(0,current);
+                stats.abiertos(abiertos.size());
             }
 
-            //mover current a cerrados.
-            abiertos.remove(current);
+            //sacar current de abiertos (su padre queda en memoria)
+            abiertos.remove(0);
         }
-        pasos = plan(cerrados, this);
+        pasos = plan(memoria, current);
         System.out.println(memoria);
-        return pasos;
+        return stats.termina(pasos);
     }
 
     /*---------------------------------------------------------------------------*/
 
+    /**
+     * Búsqueda en anchura. Si el tablero cabe en un long se hace nivel a nivel
+     * sobre arrays de tableros empaquetados (LevelBFS).
+     *
+     * @return la lista de movimientos hasta el objetivo, vacía si no se ha
+     * encontrado solución en el plazo o el tablero ya era el objetivo.
+     */
     public ArrayList<Integer> busquedaPrimeroAnchura(){
-        return this.busquedaPrimeroAnchura(null, null,null,null);
+        if (this.tableroGrande == null) {
+            SearchStats stats = this.estadisticas = new SearchStats();
+            LevelBFS bfs = new LevelBFS(this.n);
+            ArrayList<Integer> pasos = bfs.resuelve(this.tablero, plazo(), stats);
+            System.out.println("Nodos por nivel:" + bfs.niveles());
+            return stats.termina(pasos);
+        }
+        return this.busquedaPrimeroAnchura(null,null,null);
     }
 
-    public ArrayList<Integer> busquedaPrimeroAnchura(ArrayList<NPuzzle> abiertos, ArrayList<NPuzzle> cerrados, Timer timer, Memory memoria){
-        if ((abiertos == null && cerrados != null) || (cerrados == null && abiertos != null))
-            throw new RuntimeException("Cerrados y abiertos deben ser ambos null, o inicializados");
-        if (abiertos == null){
-            abiertos = new ArrayList<>();
-            abiertos.add(this);
-        }
+    public ArrayList<Integer> busquedaPrimeroAnchura(ArrayList<NPuzzle> abiertos, Deadline plazo, Memory memoria){
+        this.estadisticas = new SearchStats();
+        return this.busquedaPrimeroAnchura(abiertos, plazo, memoria, this.estadisticas);
+    }
 
-        if (cerrados == null){
-            cerrados = new ArrayList<>();
-        }
+    private ArrayList<Integer> busquedaPrimeroAnchura(ArrayList<NPuzzle> abiertos, Deadline plazo, Memory memoria,
+                                                     SearchStats stats){
+        if ((abiertos == null && memoria != null) || (memoria == null && abiertos != null))
+            throw new RuntimeException("Abiertos y memoria deben ser ambos null, o inicializados");
+        ArrayDeque<NPuzzle> cola = new ArrayDeque<>();
+        if (abiertos == null) cola.add(this);
+        else cola.addAll(abiertos);
 
         if (memoria == null){
             memoria = new Memory();
             memoria.isViewed(this);
         }
 
-        if (timer == null) timer = new Timer();
+        if (plazo == null) plazo = plazo();
+        long vueltas = 0;
 
-        ArrayList<Integer> pasos = new ArrayList<>(),
-                posibles;
-        NPuzzle current, newPuzzle;
+        ArrayList<Integer> pasos = new ArrayList<>();
+        int[] posibles;
+        NPuzzle current = this, newPuzzle;
         boolean goal = false;
         while (!goal){
-            //comprobar tiempo
-            if (timer.duration() > Main.TMAXmillis) return pasos;
+            //comprobar plazo
+            if (plazo.comprueba(++vueltas)) return stats.interrumpe(pasos);
 
-            //seleccionar
-            try {
-                current = abiertos.get(0);
-            }catch (Error e){
-                //abiertos está vacio -> no hay solución
-                return pasos;
-            }
+            //seleccionar (sale de la cola)
+            current = cola.poll();
+            if (current == null) return stats.termina(pasos);//abiertos está vacio -> no hay solución
 
             //comprobar si objetivo
             goal = current.objetivo();
 
             //expandir
-            posibles = current.posiblesMovimientos();
+            stats.expandidos++;
+            posibles = current.movimientosPosibles();
             for (int i : posibles){
                 newPuzzle = current.copiaYMueveInseguro(i);
+                stats.generados++;
+                stats.evaluaciones++;
                 if (!memoria.isViewed(newPuzzle)){
-                    abiertos.add(newPuzzle);
-                }
+                    cola.add(newPuzzle);
+                } else stats.duplicados++;
             }
-            //mover current a cerrados.
-            abiertos.remove(current);
-            cerrados.add(0,current);
+            stats.abiertos(cola.size());
         }
-        pasos = plan(cerrados, this);
+        pasos = plan(memoria, current);
         System.out.println(memoria);
-        return pasos;
+        return stats.termina(pasos);
+    }
+
+    /**
+     * Búsqueda en anchura bidireccional: crece a la vez desde este tablero y
+     * desde el objetivo, expandiendo cada vez un nivel completo de la frontera
+     * más pequeña. Cuando un nodo nuevo ya está en la memoria del otro sentido
+     * las dos búsquedas se han encontrado; al acabar ese nivel se toma el
+     * encuentro más corto y se unen los dos planes. Explora del orden de
+     * 2·b^(d/2) estados en lugar de b^d.
+     *
+     * @return la lista de movimientos (óptima) hasta el objetivo, vacía si no se
+     * ha encontrado solución en el plazo o el tablero ya era el objetivo.
+     */
+    public ArrayList<Integer> busquedaBidireccional(){
+        int[] casillasObjetivo = new int[this.n + 1];
+        for (int i = 0; i <= this.n; i++) casillasObjetivo[i] = i;
+        NPuzzle objetivo = new NPuzzle(this.n, casillasObjetivo);
+        //equals compara también la heurística: los dos frentes deben usar la misma
+        objetivo.usaHeuristica(this.funcionHeuristica);
+
+        ArrayList<NPuzzle> frenteAdelante = new ArrayList<>(),
+                frenteAtras = new ArrayList<>();
+        Memory adelante = new Memory(), atras = new Memory();
+        ArrayList<Integer> pasos = new ArrayList<>();
+        SearchStats stats = this.estadisticas = new SearchStats();
+        if (this.equals(objetivo)) return stats.termina(pasos);
+
+        adelante.isViewed(this);
+        atras.isViewed(objetivo);
+        frenteAdelante.add(this);
+        frenteAtras.add(objetivo);
+        int profundidadAdelante = 0, profundidadAtras = 0;
+
+        Deadline plazo = plazo();
+        NPuzzle encuentro = null;
+        int mejor = Integer.MAX_VALUE;
+        while (encuentro == null) {
+            if (frenteAdelante.isEmpty() || frenteAtras.isEmpty()) return stats.termina(pasos);//no hay solución
+
+            //expandimos el nivel de la frontera más pequeña
+            boolean haciaDelante = frenteAdelante.size() <= frenteAtras.size();
+            ArrayList<NPuzzle> frente = haciaDelante ? frenteAdelante : frenteAtras,
+                    siguiente = new ArrayList<>(frente.size() * 2);
+            Memory propia = haciaDelante ? adelante : atras,
+                    otra = haciaDelante ? atras : adelante;
+            NPuzzle raizOtra = haciaDelante ? objetivo : this;
+            int profundidad = (haciaDelante ? profundidadAdelante : profundidadAtras) + 1;
+
+            for (NPuzzle current : frente) {
+                //comprobar plazo
+                if (plazo.comprueba(stats.expandidos)) return stats.interrumpe(pasos);
+
+                stats.expandidos++;
+                for (int i : current.movimientosPosibles()) {
+                    NPuzzle newPuzzle = current.copiaYMueveInseguro(i);
+                    stats.generados++;
+                    stats.evaluaciones++;
+                    if (propia.isViewed(newPuzzle)) {
+                        stats.duplicados++;
+                        continue;
+                    }
+                    siguiente.add(newPuzzle);
+                    if (otra.contains(newPuzzle)) {
+                        int longitud = profundidad + raizOtra.distanciaEnMemoria(otra, newPuzzle);
+                        if (longitud < mejor) {
+                            mejor = longitud;
+                            encuentro = newPuzzle;
+                        }
+                    }
+                }
+            }
+
+            stats.abiertos(siguiente.size() + (haciaDelante ? frenteAtras.size() : frenteAdelante.size()));
+            if (haciaDelante) {
+                frenteAdelante = siguiente;
+                profundidadAdelante = profundidad;
+            } else {
+                frenteAtras = siguiente;
+                profundidadAtras = profundidad;
+            }
+        }
+
+        //de este tablero al encuentro, y del encuentro al objetivo
+        pasos = plan(adelante, encuentro);
+        NPuzzle actual = new NPuzzle(encuentro);
+        while (!actual.equals(objetivo)) {
+            int padre = atras.padre(actual);
+            pasos.add(padre);
+            actual.mueveInseguro(padre);
+        }
+        System.out.println(adelante + " + " + atras.count);
+        return stats.termina(pasos);
+    }
+
+    /**
+     * Número de movimientos de un nodo a este tablero (la raíz de la búsqueda
+     * que llenó la memoria), siguiendo los movimientos al padre guardados.
+     */
+    private int distanciaEnMemoria(Memory memoria, NPuzzle nodo) {
+        NPuzzle actual = new NPuzzle(nodo);
+        int distancia = 0;
+        while (!actual.equals(this)) {
+            actual.mueveInseguro(memoria.padre(actual));
+            distancia++;
+        }
+        return distancia;
+    }
+
+    /**
+     * Solución óptima de un 8-puzzle leída de la tabla completa de distancias,
+     * sin búsqueda.
+     *
+     * @param oraculo tabla de distancias del 8-puzzle
+     * @return la lista de movimientos hasta el objetivo, vacía si no tiene
+     * solución o el tablero ya era el objetivo.
+     */
+    public ArrayList<Integer> solucionOptima(DistanceOracle oraculo){
+        if (this.n != 8)
+            throw new RuntimeException("La tabla de distancias sólo sirve para el 8-puzzle");
+        return oraculo.solucion(this.tablero);
     }
 
+    /**
+     * Escalada por máxima pendiente: búsqueda en haz de anchura 1 que sigue
+     * por el mejor hijo no visitado sólo si no empeora la heurística. Se para
+     * sin plan en cuanto ninguno cumple eso (un mínimo local o una meseta ya
+     * recorrida).
+     *
+     * @return la lista de movimientos hasta el objetivo, vacía si se ha
+     * atascado, ha vencido el plazo o el tablero ya era el objetivo.
+     */
     public ArrayList<Integer> escaladaSimple(){
+        return haz(1, ForkJoinPool.commonPool(), true);
+    }
 
-        ArrayList<NPuzzle> abiertos = new ArrayList<>(),
-                cerrados= new ArrayList<>();
+    /**
+     * Búsqueda en haz: en cada nivel se quedan los mejores hijos (por h) no
+     * visitados, que se generan en paralelo en el pool común. Usa memoria del
+     * orden de anchura·profundidad pero no garantiza el plan óptimo.
+     *
+     * @param anchura número de tableros que se guardan en cada nivel
+     * @return la lista de movimientos hasta el objetivo, vacía si el haz se ha
+     * quedado sin tableros, ha vencido el plazo o el tablero ya era el objetivo.
+     */
+    public ArrayList<Integer> busquedaHaz(int anchura){
+        return busquedaHaz(anchura, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Como busquedaHaz(anchura), generando los hijos en el pool dado. Con
+     * anchura 1 sigue por el mejor hijo aunque empeore la heurística, así que
+     * sólo se para en un callejón sin salida o al vencer el plazo.
+     *
+     * @param anchura número de tableros que se guardan en cada nivel
+     * @param pool    pool donde se generan y evalúan los hijos
+     * @return la lista de movimientos hasta el objetivo, vacía si el haz se ha
+     * quedado sin tableros, ha vencido el plazo o el tablero ya era el objetivo.
+     */
+    public ArrayList<Integer> busquedaHaz(int anchura, ForkJoinPool pool){
+        return haz(anchura, pool, false);
+    }
+
+    private ArrayList<Integer> haz(int anchura, ForkJoinPool pool, boolean escalada){
+        SearchStats stats = this.estadisticas = new SearchStats();
+        BeamSearch busqueda = new BeamSearch(this, anchura, pool, plazo(), stats, escalada);
+        ArrayList<Integer> pasos = busqueda.resuelve();
+        System.out.println("Nodos expandidos:" + stats.expandidos);
+        return stats.termina(pasos);
+    }
+
+    public ArrayList<Integer> busquedaPrimeroMejorA(){
+
+        BucketQueue abiertos = new BucketQueue();
         Memory memoria = new Memory();
-        ArrayList<Integer> pasos = new ArrayList<>(),
-                posibles;
-        NPuzzle current, newPuzzle;
+        ArrayList<Integer> pasos = new ArrayList<>();
+        int[] posibles;
+        NPuzzle current = this, newPuzzle;
         boolean goal = false;
 
-        memoria.isViewed(this);
-        abiertos.add(this);
+        SearchStats stats = this.estadisticas = new SearchStats();
 
-        Timer timer = new Timer();
-        while (!goal){
-            //comprobar tiempo
-            if (timer.duration() > Main.TMAXmillis) return pasos;
+        abiertos.push(this);
 
-            //seleccionar
-            try {
-                current = abiertos.get(0);
-            }catch (Exception e){
-                return pasos;//abiertos está vacio -> no hay solución
+        Deadline plazo = plazo();
+        long vueltas = 0;
+
+        while (!goal){
+            //comprobar plazo
+            if (plazo.comprueba(++vueltas)) return stats.interrumpe(pasos);
+
+            //seleccionar (sale de abiertos)
+            current = abiertos.poll();
+            if (current == null) return stats.termina(pasos);//abiertos está vacio -> no hay solución
+
+            //los nodos se cierran al expandirlos: si ya estaba cerrado se
+            //llegó antes con un coste menor o igual y se descarta. Al cerrarlo
+            //se guarda su movimiento al padre para reconstruir el plan
+            if (memoria.isViewed(current)) {
+                stats.duplicados++;
+                continue;
             }
+
             //comprobar si objetivo
             goal = current.objetivo();
 
             //expandir
-            posibles = current.posiblesMovimientos();
+            stats.expandidos++;
+            posibles = current.movimientosPosibles();
             for (int i : posibles){
                 newPuzzle = current.copiaYMueveInseguro(i);
-//                System.out.println(newPuzzle.h + "vs" + current.h);
-                if (!memoria.isViewed(newPuzzle) && newPuzzle.h <= current.h){
-                    abiertos.add(1,newPuzzle);
-                    break;
-                }
+                stats.generados++;
+                stats.evaluaciones++;
+                if (!memoria.contains(newPuzzle)) {
+                    // la cola de cubetas mantiene ABIERTOS ordenado por f
+                    abiertos.push(newPuzzle);
+                } else stats.duplicados++;
             }
-            //mover current a cerrados.
-            abiertos.remove(current);
-            cerrados.add(0,current);
+            stats.abiertos(abiertos.size());
         }
-        pasos = plan(cerrados, this);
+        pasos = plan(memoria, current);
         System.out.println(memoria);
-        return pasos;
+        return stats.termina(pasos);
     }
 
-    public ArrayList<Integer> busquedaPrimeroMejorA(){
+    /**
+     * A* ponderado "anytime": devuelve enseguida un plan no óptimo y lo va
+     * mejorando con pesos menores hasta demostrar que es óptimo o vencer el
+     * plazo. Cada plan mejor que el anterior se pasa al receptor según se
+     * encuentra.
+     *
+     * @param receptor recibe cada plan mejorado (puede ser null)
+     * @return el mejor plan encontrado, vacío si no se ha encontrado ninguno
+     * en el plazo o el tablero ya era el objetivo.
+     */
+    public ArrayList<Integer> busquedaPrimeroMejorAnytime(Consumer<ArrayList<Integer>> receptor) {
+        SearchStats stats = this.estadisticas = new SearchStats();
+        AnytimeAStar busqueda = new AnytimeAStar(this, plazo(), stats, receptor);
+        return stats.termina(busqueda.resuelve());
+    }
 
-        ArrayList<NPuzzle> abiertos = new ArrayList<>(),
-                cerrados= new ArrayList<>();
-        Memory memoria = new Memory();
-        ArrayList<Integer> pasos = new ArrayList<>(),
-                posibles;
-        NPuzzle current, newPuzzle;
-        boolean goal = false;
+    /**
+     * A* con memoria acotada (SMA*): nunca guarda más de maxNodos nodos, por
+     * difícil que sea el puzzle. Cuando se llena olvida las hojas con peor f y
+     * guarda su valor en el padre, para regenerarlas si vuelven a ser las
+     * mejores. La solución es óptima si su camino cabe en la memoria.
+     *
+     * @param maxNodos número máximo de nodos en memoria
+     * @return la lista de movimientos hasta el objetivo, vacía si no se ha
+     * encontrado solución en el plazo o no cabe en la memoria.
+     */
+    public ArrayList<Integer> busquedaPrimeroMejorAcotada(int maxNodos) {
+        SearchStats stats = this.estadisticas = new SearchStats();
+        BoundedAStar busqueda = new BoundedAStar(maxNodos, stats, plazo());
+        ArrayList<Integer> pasos = busqueda.resuelve(this);
+        System.out.println("Nodos expandidos:" + stats.expandidos + " olvidados:" + busqueda.olvidados());
+        return stats.termina(pasos);
+    }
 
-        memoria.isViewed(this);
-        abiertos.add(this);
+    /**
+     * Como busquedaPrimeroMejorAcotada(int), con el límite en bytes
+     *
+     * @param maxBytes memoria aproximada que pueden ocupar los nodos
+     */
+    public ArrayList<Integer> busquedaPrimeroMejorAcotadaBytes(long maxBytes) {
+        return busquedaPrimeroMejorAcotada(BoundedAStar.nodosPara(maxBytes));
+    }
 
-        Timer timer = new Timer();
+    /*---------------------------------------------------------------------------*/
 
-        while (!goal){
-            //comprobar tiempo
-            if (timer.duration() > Main.TMAXmillis) return pasos;
+    /**
+     * Valor devuelto por la búsqueda en profundidad de IDA* cuando encuentra el
+     * objetivo.
+     */
+    static final int ENCONTRADO = -1;
 
-            //seleccionar
-            try {
-                current = abiertos.get(0);
-            }catch (Exception e){
-                return pasos;//abiertos está vacio -> no hay solución
-            }
-            //comprobar si objetivo
-            goal = current.objetivo();
+    /**
+     * Estado compartido por todas las llamadas recursivas de una búsqueda IDA*.
+     * Se crea una vez por búsqueda, no por nodo.
+     */
+    static final class ContextoIDA {
+        int[] camino = new int[64];
+        int longitud;
+        long nodos;
+        long generados;
+        Deadline plazo;
+        boolean agotado;
+        /**
+         * Aviso de otros hilos para abandonar la búsqueda (null si no hay)
+         */
+        AtomicBoolean parar;
+    }
 
-            //expandir
-            posibles = current.posiblesMovimientos();
-            for (int i : posibles){
-                newPuzzle = current.copiaYMueveInseguro(i);
-                if (!memoria.isViewed(newPuzzle)) {
-                    // se añade el nuevo puzzle, teniendo en cuenta que el vector ABIERTOS esta ordenado
-                    ListIterator<NPuzzle> iterator = abiertos.listIterator();
-                    NPuzzle pointer;
-                    try {
-                        int f = newPuzzle.f();
-                        while (true){
-                            pointer = iterator.next();
-                            if (f < pointer.f()) {
-                                iterator.add(newPuzzle);
-                                break;
-                            }
-                        }
-                    } catch (NoSuchElementException e) {
-                        iterator.add(newPuzzle);
-                    }
-                }
+    /**
+     * Búsqueda IDA*: búsquedas en profundidad sucesivas limitadas por f=g+h, en
+     * las que el umbral pasa a ser el menor f que lo superó en la iteración
+     * anterior. Se hace y deshace cada movimiento sobre un único tablero, sin
+     * crear nodos, por lo que la memoria usada sólo depende de la profundidad.
+     *
+     * @return la lista de movimientos hasta el objetivo, vacía si no se ha
+     * encontrado solución en el plazo o el tablero ya era el objetivo.
+     */
+    public ArrayList<Integer> busquedaIDA() {
+        SearchStats stats = this.estadisticas = new SearchStats();
+        NPuzzle tablero = new NPuzzle(this);
+        ContextoIDA contexto = new ContextoIDA();
+        contexto.plazo = plazo();
+        ArrayList<Integer> pasos = new ArrayList<>();
+
+        int umbral = tablero.h;
+        while (true) {
+            //el camino nunca es más largo que el umbral
+            if (contexto.camino.length <= umbral)
+                contexto.camino = new int[umbral * 2];
+            //en la raíz no hay movimiento prohibido: el padre que traiga el
+            //tablero no forma parte de esta búsqueda
+            int t = tablero.dfsIDA(0, umbral, 0, contexto);
+            if (t == ENCONTRADO) {
+                for (int i = 0; i < contexto.longitud; i++)
+                    pasos.add(contexto.camino[i]);
+                break;
             }
-            //mover current a cerrados.
-            abiertos.remove(current);
-            cerrados.add(0,current);
+            if (contexto.agotado || t == Integer.MAX_VALUE) break;
+            umbral = t;
         }
-        pasos = plan(cerrados, this);
-        System.out.println(memoria);
-        return pasos;
+        if (contexto.agotado) stats.interrumpe(pasos);
+        stats.expandidos = contexto.nodos;
+        stats.generados = contexto.generados;
+        //cada hijo se evalúa al hacer el movimiento y al deshacerlo
+        stats.evaluaciones = 2 * contexto.generados;
+        //lo pendiente es la pila de la recursión, como mucho umbral nodos
+        stats.maxAbiertos = umbral;
+        return stats.termina(pasos);
+    }
+
+    /**
+     * Búsqueda en profundidad limitada por umbral de IDA*, sobre este tablero.
+     *
+     * @param g         coste hasta el nodo actual
+     * @param umbral    máximo f permitido en esta iteración
+     * @param prohibido movimiento que desharía el último (vuelta al padre)
+     * @param contexto  estado de la búsqueda
+     * @return ENCONTRADO, o el menor f que ha superado el umbral
+     */
+    int dfsIDA(int g, int umbral, int prohibido, ContextoIDA contexto) {
+        int f = g + this.h;
+        if (f > umbral) return f;
+        if (this.h == 0 && objetivo()) {
+            contexto.longitud = g;
+            return ENCONTRADO;
+        }
+
+        //comprobar plazo y aviso de parada cada MASCARA+1 nodos
+        if ((++contexto.nodos & Deadline.MASCARA) == 0
+                && (contexto.plazo.vencido()
+                    || (contexto.parar != null && contexto.parar.get())))
+            contexto.agotado = true;
+        if (contexto.agotado) return Integer.MAX_VALUE;
+
+        int minimo = Integer.MAX_VALUE;
+        for (int movimiento = ARRIBA; movimiento <= IZQUIERDA; movimiento++) {
+            if (movimiento == prohibido || !puedeMover(movimiento)) continue;
+            int origen = this.posicionHueco;
+            this.moveHoleTo(destino(movimiento));
+            contexto.generados++;
+            contexto.camino[g] = movimiento;
+            int t = dfsIDA(g + 1, umbral, inverso(movimiento), contexto);
+            this.moveHoleTo(origen);
+            if (t == ENCONTRADO) return ENCONTRADO;
+            if (t < minimo) minimo = t;
+        }
+        return minimo;
+    }
+
+    /**
+     * IDA* repartida entre varios hilos. Cada iteración reparte los subárboles
+     * de los primeros niveles como tareas de un ForkJoinPool (que se roban el
+     * trabajo entre hilos) y cada tarea sigue en profundidad sobre su propia
+     * copia del tablero.
+     *
+     * @return la lista de movimientos hasta el objetivo, vacía si no se ha
+     * encontrado solución en el plazo o el tablero ya era el objetivo.
+     */
+    public ArrayList<Integer> busquedaIDAParalela() {
+        return busquedaIDAParalela(ForkJoinPool.commonPool());
+    }
+
+    public ArrayList<Integer> busquedaIDAParalela(ForkJoinPool pool) {
+        SearchStats stats = this.estadisticas = new SearchStats();
+        ParallelIDA busqueda = new ParallelIDA(this, pool, plazo());
+        ArrayList<Integer> pasos = busqueda.resuelve(stats);
+        System.out.println("Nodos expandidos:" + stats.expandidos);
+        return stats.termina(pasos);
     }
 
 }
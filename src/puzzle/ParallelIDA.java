@@ -0,0 +1,139 @@
+package puzzle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * IDA* en paralelo. En cada iteración el árbol se reparte en tareas hasta una
+ * profundidad fija (más profunda cuantos más hilos haya) y el resto de cada
+ * subárbol lo recorre NPuzzle.dfsIDA sobre una copia propia del tablero. No se
+ * comparte ningún estado mutable salvo el aviso de parada y la solución.
+ */
+class ParallelIDA {
+    private final NPuzzle origen;
+    private final ForkJoinPool pool;
+    private final int reparto;
+    private final Deadline plazo;
+    private final AtomicBoolean parar = new AtomicBoolean();
+    private final AtomicReference<int[]> solucion = new AtomicReference<>();
+    private final LongAdder nodos = new LongAdder();
+    private final LongAdder generados = new LongAdder();
+    private volatile boolean agotado;
+    private int umbral;
+
+    ParallelIDA(NPuzzle origen, ForkJoinPool pool, Deadline plazo) {
+        this.origen = new NPuzzle(origen);
+        this.pool = pool;
+        this.plazo = plazo;
+        //unas 256 tareas por hilo, con un factor de ramificación cercano a 2
+        int tareas = pool.getParallelism() * 256;
+        this.reparto = (int) Math.ceil(Math.log(tareas) / Math.log(2));
+    }
+
+    /**
+     * @param estadisticas donde se suman al final los contadores de las tareas
+     */
+    ArrayList<Integer> resuelve(SearchStats estadisticas) {
+        ArrayList<Integer> pasos = new ArrayList<>();
+        this.umbral = this.origen.h;
+        while (true) {
+            //la raíz no tiene movimiento prohibido
+            int t = this.pool.invoke(new Tarea(this.origen, 0, 0, new int[0]));
+            int[] camino = this.solucion.get();
+            if (camino != null) {
+                for (int movimiento : camino) pasos.add(movimiento);
+                break;
+            }
+            if (this.agotado || t == Integer.MAX_VALUE) {
+                if (this.agotado) estadisticas.interrumpida = true;
+                break;
+            }
+            this.umbral = t;
+        }
+        estadisticas.expandidos = this.nodos.sum();
+        estadisticas.generados = this.generados.sum();
+        estadisticas.evaluaciones = 2 * estadisticas.generados;
+        estadisticas.maxAbiertos = this.umbral;
+        return pasos;
+    }
+
+    /**
+     * Subárbol de la búsqueda: el tablero al que se llega con los movimientos del
+     * prefijo.
+     */
+    private final class Tarea extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final NPuzzle tablero;
+        private final int g;
+        private final int prohibido;
+        private final int[] prefijo;
+
+        Tarea(NPuzzle tablero, int g, int prohibido, int[] prefijo) {
+            this.tablero = tablero;
+            this.g = g;
+            this.prohibido = prohibido;
+            this.prefijo = prefijo;
+        }
+
+        @Override
+        protected Integer compute() {
+            int f = this.g + this.tablero.h;
+            if (f > umbral) return f;
+            if (parar.get()) return Integer.MAX_VALUE;
+            if (plazo.vencido()) {
+                agotado = true;
+                parar.set(true);
+                return Integer.MAX_VALUE;
+            }
+
+            if (this.g >= reparto || (this.tablero.h == 0 && this.tablero.objetivo()))
+                return secuencial();
+
+            nodos.increment();
+            ArrayList<Tarea> hijas = new ArrayList<>(4);
+            for (int movimiento = NPuzzle.ARRIBA; movimiento <= NPuzzle.IZQUIERDA; movimiento++) {
+                if (movimiento == this.prohibido || !this.tablero.puedeMover(movimiento)) continue;
+                int[] camino = Arrays.copyOf(this.prefijo, this.g + 1);
+                camino[this.g] = movimiento;
+                hijas.add(new Tarea(this.tablero.copiaYMueveInseguro(movimiento), this.g + 1,
+                        this.tablero.inverso(movimiento), camino));
+            }
+            generados.add(hijas.size());
+            int minimo = Integer.MAX_VALUE;
+            for (Tarea hija : invokeAll(hijas)) {
+                int t = hija.join();
+                if (t == NPuzzle.ENCONTRADO) return NPuzzle.ENCONTRADO;
+                if (t < minimo) minimo = t;
+            }
+            return minimo;
+        }
+
+        /**
+         * Recorre el subárbol en profundidad, sin crear más tareas
+         */
+        private int secuencial() {
+            NPuzzle.ContextoIDA contexto = new NPuzzle.ContextoIDA();
+            contexto.camino = Arrays.copyOf(this.prefijo, umbral + 1);
+            contexto.plazo = plazo;
+            contexto.parar = parar;
+            int t = this.tablero.dfsIDA(this.g, umbral, this.prohibido, contexto);
+            nodos.add(contexto.nodos);
+            generados.add(contexto.generados);
+            if (t == NPuzzle.ENCONTRADO) {
+                solucion.compareAndSet(null, Arrays.copyOf(contexto.camino, contexto.longitud));
+                parar.set(true);
+            } else if (contexto.agotado && !parar.get()) {
+                //se acabó el tiempo: paran todas las tareas
+                agotado = true;
+                parar.set(true);
+            }
+            return t;
+        }
+    }
+}
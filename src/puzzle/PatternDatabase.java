@@ -0,0 +1,328 @@
+package puzzle;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Heurística de bases de datos de patrones aditivas y disjuntas. Las fichas se
+ * reparten en grupos y, para cada grupo, se guarda el mínimo número de
+ * movimientos de fichas DEL GRUPO necesarios para llevarlas a su sitio desde
+ * cualquier colocación. Como cada movimiento sólo mueve una ficha, y cada ficha
+ * está en un único grupo, la suma de los valores de los grupos es admisible.
+ *
+ * Las tablas se calculan con una búsqueda en anchura hacia atrás desde el
+ * objetivo, se guardan en un fichero la primera vez y en ejecuciones
+ * posteriores se proyectan en memoria directamente desde el fichero.
+ */
+public class PatternDatabase implements Heuristic {
+
+    /**
+     * Partición 6-6-3 del 15-puzzle (columnas izquierdas, centro y fila de abajo)
+     */
+    public static final int[][] PARTICION_15_663 = {{1, 4, 5, 8, 9, 12}, {2, 3, 6, 7, 10, 11}, {13, 14, 15}};
+
+    /**
+     * Partición 7-8 del 15-puzzle. El grupo de 8 fichas necesita unos 3GB de
+     * memoria durante su generación; la tabla final ocupa 519MB.
+     */
+    public static final int[][] PARTICION_15_78 = {{1, 4, 5, 8, 9, 12, 13}, {2, 3, 6, 7, 10, 11, 14, 15}};
+
+    /**
+     * Partición 4-4 del 8-puzzle
+     */
+    public static final int[][] PARTICION_8_44 = {{1, 2, 3, 4}, {5, 6, 7, 8}};
+
+    /**
+     * Valor de una colocación aún no alcanzada durante la generación
+     */
+    private static final int SIN_VALOR = 0xFF;
+
+    /**
+     * Tamaño del problema, el número de casillas es n+1
+     */
+    final int n;
+    final int casillas;
+
+    /**
+     * Fichas de cada grupo, en el orden usado para calcular el índice
+     */
+    final int[][] grupos;
+
+    /**
+     * Una tabla por grupo: distancia de cada colocación del grupo, indexada por
+     * el rango de la permutación parcial de las posiciones de sus fichas
+     */
+    final ByteBuffer[] tablas;
+
+    /**
+     * Grupo de cada ficha, -1 si no está en ninguno
+     */
+    final int[] grupoDe;
+
+    private PatternDatabase(int n, int[][] grupos) {
+        this.n = n;
+        this.casillas = n + 1;
+        this.grupos = grupos;
+        this.tablas = new ByteBuffer[grupos.length];
+        this.grupoDe = new int[n + 1];
+        Arrays.fill(this.grupoDe, -1);
+        for (int i = 0; i < grupos.length; i++)
+            for (int ficha : grupos[i]) this.grupoDe[ficha] = i;
+    }
+
+    /*---------------------------------------------------------------------------*/
+
+    /**
+     * Carga las tablas de un fichero, proyectándolo en memoria. Si el fichero no
+     * existe (o no tiene el tamaño esperado) las genera y lo escribe antes.
+     * Si no se puede usar el fichero se trabaja con las tablas en memoria.
+     *
+     * @param n       tamaño del problema (8, 15)
+     * @param grupos  partición de las fichas 1..n en grupos disjuntos
+     * @param fichero fichero donde se guardan las tablas
+     * @return la base de datos de patrones lista para usar
+     */
+    public static PatternDatabase carga(int n, int[][] grupos, String fichero) {
+        PatternDatabase pdb = new PatternDatabase(n, grupos);
+        File f = new File(fichero);
+        long esperado = 0;
+        for (int[] grupo : grupos) esperado += tamano(n + 1, grupo.length);
+
+        try {
+            if (!f.exists() || f.length() != esperado) {
+                //se genera grupo a grupo para no tener más de una tabla en memoria
+                try (OutputStream out = new FileOutputStream(f)) {
+                    for (int[] grupo : grupos) out.write(genera(n, grupo));
+                }
+            }
+            try (FileChannel canal = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+                long inicio = 0;
+                for (int i = 0; i < grupos.length; i++) {
+                    long tam = tamano(n + 1, grupos[i].length);
+                    pdb.tablas[i] = canal.map(FileChannel.MapMode.READ_ONLY, inicio, tam);
+                    inicio += tam;
+                }
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(PatternDatabase.class.getName()).log(Level.SEVERE, "Fallo usando fichero " + fichero, ex);
+            for (int i = 0; i < grupos.length; i++)
+                if (pdb.tablas[i] == null) pdb.tablas[i] = ByteBuffer.wrap(genera(n, grupos[i]));
+        }
+        return pdb;
+    }
+
+    /*---------------------------------------------------------------------------*/
+
+    /**
+     * Valor heurístico de un tablero: suma de los valores de todos los grupos
+     *
+     * @param puzzle tablero a evaluar
+     * @return estimación admisible del número de movimientos hasta el objetivo
+     */
+    @Override
+    public int evalua(NPuzzle puzzle) {
+        int h = 0;
+        for (int i = 0; i < this.grupos.length; i++)
+            h += this.tablas[i].get(indice(puzzle, this.grupos[i], -1, -1)) & 0xFF;
+        return h;
+    }
+
+    /**
+     * Sólo cambia el valor del grupo de la ficha movida
+     */
+    @Override
+    public int actualiza(NPuzzle puzzle, int h, int ficha, int desde, int hasta) {
+        int g = this.grupoDe[ficha];
+        if (g < 0) return h;
+        int[] grupo = this.grupos[g];
+        return h - (this.tablas[g].get(indice(puzzle, grupo, ficha, desde)) & 0xFF)
+                + (this.tablas[g].get(indice(puzzle, grupo, -1, -1)) & 0xFF);
+    }
+
+    /**
+     * Índice en la tabla de un grupo de la colocación actual de sus fichas. Si
+     * ficha >= 0 se toma esa ficha como si estuviera en la casilla posicion.
+     */
+    private int indice(NPuzzle puzzle, int[] grupo, int ficha, int posicion) {
+        int indice = 0;
+        long usadas = 0;
+        for (int i = 0; i < grupo.length; i++) {
+            int p = grupo[i] == ficha ? posicion : puzzle.posicionFicha(grupo[i]);
+            indice = indice * (this.casillas - i) + p - Long.bitCount(usadas & ((1L << p) - 1));
+            usadas |= 1L << p;
+        }
+        return indice;
+    }
+
+    /*---------------------------------------------------------------------------*/
+
+    /**
+     * Número de colocaciones distintas de k fichas en c casillas: c!/(c-k)!
+     */
+    static long tamano(int c, int k) {
+        long tam = 1;
+        for (int i = 0; i < k; i++) tam *= c - i;
+        return tam;
+    }
+
+    /**
+     * Rango de una permutación parcial (posición de cada ficha del grupo)
+     */
+    private static int rango(int[] posiciones, int c) {
+        int indice = 0;
+        long usadas = 0;
+        for (int i = 0; i < posiciones.length; i++) {
+            int p = posiciones[i];
+            indice = indice * (c - i) + p - Long.bitCount(usadas & ((1L << p) - 1));
+            usadas |= 1L << p;
+        }
+        return indice;
+    }
+
+    /**
+     * Inversa de rango: obtiene las posiciones de las fichas del grupo
+     */
+    private static void desrango(int indice, int c, int[] posiciones) {
+        int k = posiciones.length;
+        for (int i = k - 1; i >= 0; i--) {
+            posiciones[i] = indice % (c - i);
+            indice /= c - i;
+        }
+        //cada valor es el orden entre las casillas aún libres
+        long usadas = 0;
+        for (int i = 0; i < k; i++) {
+            int r = posiciones[i], p = 0;
+            while (true) {
+                if ((usadas & (1L << p)) == 0 && r-- == 0) break;
+                p++;
+            }
+            posiciones[i] = p;
+            usadas |= 1L << p;
+        }
+    }
+
+    /*---------------------------------------------------------------------------*/
+
+    /**
+     * Genera la tabla de un grupo con una búsqueda en anchura hacia atrás desde
+     * el objetivo sobre los estados (colocación del grupo, posición del hueco).
+     * Mover el hueco sin tocar fichas del grupo no cuesta nada, así que cada capa
+     * se cierra primero sobre la región del hueco. Cada estado ocupa 2 bits
+     * (a,b): 00 sin visitar, 10 capa actual, 01 capa siguiente y 11 cerrado.
+     *
+     * @param n     tamaño del problema
+     * @param grupo fichas del grupo
+     * @return tabla del grupo, una distancia por colocación
+     */
+    static byte[] genera(int n, int[] grupo) {
+        int c = n + 1, k = grupo.length;
+        int ancho = (int) Math.sqrt(c);
+        long patrones = tamano(c, k);
+        long estados = patrones * c;
+        int palabras = (int) ((estados + 63) >>> 6);
+        long[] a = new long[palabras], b = new long[palabras];
+        byte[] distancia = new byte[(int) patrones];
+        Arrays.fill(distancia, (byte) SIN_VALOR);
+
+        //casillas vecinas de cada casilla, como máscara
+        long[] vecinos = new long[c];
+        for (int p = 0; p < c; p++) {
+            if (p % ancho != 0) vecinos[p] |= 1L << (p - 1);
+            if ((p + 1) % ancho != 0) vecinos[p] |= 1L << (p + 1);
+            if (p >= ancho) vecinos[p] |= 1L << (p - ancho);
+            if (p < c - ancho) vecinos[p] |= 1L << (p + ancho);
+        }
+
+        //objetivo: cada ficha en su casilla y el hueco en la 0
+        int[] posiciones = grupo.clone();
+        long ocupadas = 0;
+        for (int p : posiciones) ocupadas |= 1L << p;
+        int inicial = rango(posiciones, c);
+        distancia[inicial] = 0;
+        marcaRegion(b, (long) inicial * c, region(0, ocupadas, vecinos));
+
+        int[] nuevas = new int[k];
+        for (int d = 0; ; d++) {
+            //la capa siguiente pasa a actual y la actual a cerrada
+            for (int w = 0; w < palabras; w++) {
+                long na = a[w] | b[w];
+                b[w] = a[w];
+                a[w] = na;
+            }
+
+            boolean hayNuevos = false;
+            long patronActual = -1;
+            for (int w = 0; w < palabras; w++) {
+                long bits = a[w] & ~b[w];
+                while (bits != 0) {
+                    long estado = ((long) w << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    long patron = estado / c;
+                    int hueco = (int) (estado % c);
+                    if (patron != patronActual) {
+                        desrango((int) patron, c, posiciones);
+                        ocupadas = 0;
+                        for (int p : posiciones) ocupadas |= 1L << p;
+                        patronActual = patron;
+                    }
+                    //mover al hueco cada ficha del grupo que tenga al lado
+                    long mov = vecinos[hueco] & ocupadas;
+                    while (mov != 0) {
+                        int desde = Long.numberOfTrailingZeros(mov);
+                        mov &= mov - 1;
+                        for (int i = 0; i < k; i++)
+                            nuevas[i] = posiciones[i] == desde ? hueco : posiciones[i];
+                        long siguiente = (long) rango(nuevas, c) * c;
+                        long e = siguiente + desde;
+                        int pw = (int) (e >>> 6);
+                        long bit = 1L << e;
+                        if (((a[pw] | b[pw]) & bit) != 0) continue;
+                        long nuevasOcupadas = (ocupadas & ~(1L << desde)) | (1L << hueco);
+                        marcaRegion(b, siguiente, region(desde, nuevasOcupadas, vecinos));
+                        int ip = (int) (siguiente / c);
+                        if ((distancia[ip] & 0xFF) == SIN_VALOR) distancia[ip] = (byte) (d + 1);
+                        hayNuevos = true;
+                    }
+                }
+            }
+            if (!hayNuevos) break;
+        }
+        return distancia;
+    }
+
+    /**
+     * Casillas que alcanza el hueco desde una casilla sin mover fichas del grupo
+     */
+    private static long region(int hueco, long ocupadas, long[] vecinos) {
+        long region = 1L << hueco, anterior;
+        do {
+            anterior = region;
+            long r = region;
+            while (r != 0) {
+                int p = Long.numberOfTrailingZeros(r);
+                r &= r - 1;
+                region |= vecinos[p] & ~ocupadas;
+            }
+        } while (region != anterior);
+        return region;
+    }
+
+    /**
+     * Marca en la capa siguiente los estados de un patrón con el hueco en la región
+     */
+    private static void marcaRegion(long[] b, long base, long region) {
+        while (region != 0) {
+            long e = base + Long.numberOfTrailingZeros(region);
+            region &= region - 1;
+            b[(int) (e >>> 6)] |= 1L << e;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package puzzle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Búsqueda aleatoria en paralelo: cada hilo del pool hace su propio paseo
+ * aleatorio sobre una copia del tablero, con su propio generador (partido del
+ * de la búsqueda, así que no hay contención entre hilos). El primero que llega
+ * al objetivo avisa al resto para que paren.
+ *
+ * Cada paseo guarda sólo el camino sin ciclos desde el origen: junto a cada
+ * movimiento se guarda el tablero al que lleva, con una tabla hash de tablero
+ * a posición en el camino, y al volver a un tablero del camino se descarta lo
+ * andado desde él. Los arrays del camino empiezan pequeños y se doblan cuando
+ * se llenan, así que la memoria va con el camino más largo sin ciclos. Un
+ * paseo cuyo camino llega a MAX_CAMINO movimientos se abandona (no vuelve a
+ * empezar); si se abandonan todos, la búsqueda acaba sin plan.
+ *
+ * Con reinicios, cada paseo vuelve a empezar desde el origen cuando supera un
+ * límite de pasos que se dobla en cada reinicio, y en cada paso se elige con
+ * probabilidad 1/2 un movimiento que acerque la ficha movida a su casilla.
+ */
+class RandomSearch {
+
+    /**
+     * Movimientos que caben en el camino de un paseo antes de que se doble
+     */
+    static final int CAPACIDAD_INICIAL = 64;
+
+    /**
+     * Longitud del camino a la que se abandona un paseo (unos 35MB por hilo).
+     * En el 8-puzzle nunca se llega: un camino sin ciclos no pasa de 9!/2.
+     */
+    static final int MAX_CAMINO = 1 << 21;
+
+    private final NPuzzle origen;
+    private final ForkJoinPool pool;
+    private final Deadline plazo;
+    private final boolean reinicios;
+    private final SplittableRandom aleatorio;
+    private final AtomicBoolean parar = new AtomicBoolean();
+    private final AtomicReference<int[]> solucion = new AtomicReference<>();
+    private final LongAdder pasos = new LongAdder();
+    private final LongAccumulator masLargo = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param reinicios si los paseos se reinician desde el origen
+     * @param aleatorio generador del que se parte el de cada hilo
+     */
+    RandomSearch(NPuzzle origen, ForkJoinPool pool, Deadline plazo, boolean reinicios,
+                 SplittableRandom aleatorio) {
+        this.origen = new NPuzzle(origen);
+        this.pool = pool;
+        this.plazo = plazo;
+        this.reinicios = reinicios;
+        this.aleatorio = aleatorio;
+    }
+
+    /**
+     * @param estadisticas donde se suman al final los contadores de los hilos
+     */
+    ArrayList<Integer> resuelve(SearchStats estadisticas) {
+        ArrayList<Integer> plan = new ArrayList<>();
+        if (!this.origen.objetivo()) {
+            int hilos = this.pool.getParallelism();
+            ArrayList<Paseo> tareas = new ArrayList<>(hilos);
+            for (int i = 0; i < hilos; i++) tareas.add(new Paseo(this.aleatorio.split()));
+            this.pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    ForkJoinTask.invokeAll(tareas);
+                }
+            });
+
+            int[] camino = this.solucion.get();
+            if (camino == null) estadisticas.interrumpida = true;
+            else for (int movimiento : camino) plan.add(movimiento);
+        }
+        estadisticas.expandidos = this.pasos.sum();
+        estadisticas.generados = estadisticas.expandidos;
+        estadisticas.evaluaciones = estadisticas.expandidos;
+        //lo que se guarda de cada paseo es su camino sin ciclos
+        estadisticas.maxAbiertos = this.masLargo.get();
+        return plan;
+    }
+
+    /*---------------------------------------------------------------------------*/
+
+    /**
+     * Camino sin ciclos desde el origen: los movimientos, el tablero al que
+     * lleva cada uno (claves[0] es el origen) y una tabla hash de
+     * direccionamiento abierto con la posición de cada tablero en el camino.
+     * Los tableros grandes se guardan además completos para comparar, y su
+     * clave es sólo un resumen.
+     */
+    private static final class Camino {
+        byte[] movimientos = new byte[CAPACIDAD_INICIAL];
+        long[] claves = new long[CAPACIDAD_INICIAL + 1];
+        byte[][] grandes;
+        //como mucho la mitad de la tabla está ocupada
+        int[] tabla = new int[CAPACIDAD_INICIAL * 2];
+        int mascara = this.tabla.length - 1;
+        int tam;
+
+        Camino(NPuzzle origen) {
+            this.grandes = origen.tableroGrande != null ? new byte[CAPACIDAD_INICIAL + 1][] : null;
+            pon(0, origen);
+        }
+
+        /**
+         * Posición del tablero en el camino, o -1 si no está
+         */
+        int busca(NPuzzle tablero) {
+            long clave = clave(tablero);
+            for (int i = casilla(clave); this.tabla[i] != 0; i = (i + 1) & this.mascara) {
+                int posicion = this.tabla[i] - 1;
+                if (this.claves[posicion] == clave
+                        && (this.grandes == null || Arrays.equals(this.grandes[posicion], tablero.tableroGrande)))
+                    return posicion;
+            }
+            return -1;
+        }
+
+        void anade(int movimiento, NPuzzle tablero) {
+            if (this.tam == this.movimientos.length) crece();
+            this.movimientos[this.tam++] = (byte) movimiento;
+            pon(this.tam, tablero);
+        }
+
+        /**
+         * Dobla los arrays del camino y vuelve a meter en la tabla todas las
+         * posiciones
+         */
+        private void crece() {
+            int capacidad = this.movimientos.length * 2;
+            this.movimientos = Arrays.copyOf(this.movimientos, capacidad);
+            this.claves = Arrays.copyOf(this.claves, capacidad + 1);
+            if (this.grandes != null) this.grandes = Arrays.copyOf(this.grandes, capacidad + 1);
+            this.tabla = new int[capacidad * 2];
+            this.mascara = this.tabla.length - 1;
+            for (int posicion = 0; posicion <= this.tam; posicion++) inserta(posicion);
+        }
+
+        /**
+         * Vuelve a la posición dada, olvidando los tableros posteriores
+         */
+        void trunca(int posicion) {
+            while (this.tam > posicion) quita(this.tam--);
+        }
+
+        private void pon(int posicion, NPuzzle tablero) {
+            this.claves[posicion] = clave(tablero);
+            if (this.grandes != null) this.grandes[posicion] = tablero.tableroGrande.clone();
+            inserta(posicion);
+        }
+
+        private void inserta(int posicion) {
+            int i = casilla(this.claves[posicion]);
+            while (this.tabla[i] != 0) i = (i + 1) & this.mascara;
+            this.tabla[i] = posicion + 1;
+        }
+
+        /**
+         * Quita de la tabla la entrada de una posición, desplazando hacia atrás
+         * las que venían detrás en su secuencia de sondeo
+         */
+        private void quita(int posicion) {
+            int i = casilla(this.claves[posicion]);
+            while (this.tabla[i] != posicion + 1) i = (i + 1) & this.mascara;
+            if (this.grandes != null) this.grandes[posicion] = null;
+            this.tabla[i] = 0;
+            for (int j = (i + 1) & this.mascara; this.tabla[j] != 0; j = (j + 1) & this.mascara) {
+                int k = casilla(this.claves[this.tabla[j] - 1]);
+                //la entrada de j se queda si su casilla está entre i (excluida) y j
+                boolean seQueda = i < j ? (i < k && k <= j) : (i < k || k <= j);
+                if (seQueda) continue;
+                this.tabla[i] = this.tabla[j];
+                this.tabla[j] = 0;
+                i = j;
+            }
+        }
+
+        private int casilla(long clave) {
+            return (int) ((clave * 0x9E3779B97F4A7C15L) >>> 32) & this.mascara;
+        }
+
+        private static long clave(NPuzzle tablero) {
+            return tablero.tableroGrande == null ? tablero.tablero : Arrays.hashCode(tablero.tableroGrande);
+        }
+    }
+
+    /**
+     * Paseos aleatorios de un hilo, hasta llegar al objetivo o que le avisen
+     */
+    private final class Paseo extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final SplittableRandom aleatorio;
+
+        Paseo(SplittableRandom aleatorio) {
+            this.aleatorio = aleatorio;
+        }
+
+        @Override
+        protected void compute() {
+            Geometry geometria = Geometry.de(origen.n);
+            int[] candidatos = new int[4];
+            long dados = 0;
+            //primer límite de los reinicios: el doble de la heurística del origen
+            long limite = Math.max(2L * origen.h, 32);
+            Camino camino = new Camino(origen);
+            int maximo = 0;
+            try {
+                while (true) {
+                    NPuzzle tablero = new NPuzzle(origen);
+                    camino.trunca(0);
+                    //en el origen no hay movimiento prohibido
+                    int prohibido = 0;
+                    long andados = 0;
+                    while (!reinicios || andados < limite) {
+                        if ((++dados & Deadline.MASCARA) == 0 && (parar.get() || plazo.vencido())) {
+                            parar.set(true);
+                            return;
+                        }
+                        int movimiento = elige(tablero, prohibido, geometria, candidatos);
+                        tablero.mueveInseguro(movimiento);
+                        andados++;
+                        prohibido = tablero.inverso(movimiento);
+                        if (tablero.h == 0 && tablero.objetivo()) {
+                            int[] plan = new int[camino.tam + 1];
+                            for (int i = 0; i < camino.tam; i++) plan[i] = camino.movimientos[i];
+                            plan[camino.tam] = movimiento;
+                            //el primero que llega avisa a los demás
+                            if (solucion.compareAndSet(null, plan)) parar.set(true);
+                            return;
+                        }
+                        int anterior = camino.busca(tablero);
+                        if (anterior >= 0) camino.trunca(anterior);
+                        else if (camino.tam == MAX_CAMINO) return;
+                        else {
+                            camino.anade(movimiento, tablero);
+                            maximo = Math.max(maximo, camino.tam);
+                        }
+                    }
+                    if (reinicios) limite *= 2;
+                }
+            } finally {
+                pasos.add(dados);
+                masLargo.accumulate(maximo);
+            }
+        }
+
+        /**
+         * Elige un movimiento válido que no deshaga el anterior; con reinicios,
+         * la mitad de las veces sólo entre los que acercan la ficha movida a su
+         * casilla (si hay alguno)
+         */
+        private int elige(NPuzzle tablero, int prohibido, Geometry geometria, int[] candidatos) {
+            int hueco = tablero.posicionHueco;
+            int tam = 0;
+            if (reinicios && this.aleatorio.nextBoolean()) {
+                for (int movimiento : tablero.movimientosPosibles()) {
+                    if (movimiento == prohibido) continue;
+                    int destino = tablero.destino(movimiento);
+                    int ficha = tablero.casilla(destino);
+                    if (geometria.distancia(ficha, hueco) < geometria.distancia(ficha, destino))
+                        candidatos[tam++] = movimiento;
+                }
+            }
+            if (tam == 0) {
+                for (int movimiento : tablero.movimientosPosibles())
+                    if (movimiento != prohibido) candidatos[tam++] = movimiento;
+            }
+            return candidatos[this.aleatorio.nextInt(tam)];
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package puzzle;
+
+/**
+ * Estadísticas de una búsqueda. Cada búsqueda crea las suyas al empezar y las
+ * deja en el tablero desde el que se lanzó (NPuzzle.estadisticas()). Los
+ * contadores son campos sin sincronizar que incrementa el propio bucle de la
+ * búsqueda; las búsquedas paralelas acumulan por hilo y suman al final.
+ */
+public class SearchStats {
+
+    /**
+     * Nodos expandidos (a los que se les han generado los hijos)
+     */
+    long expandidos;
+
+    /**
+     * Hijos generados
+     */
+    long generados;
+
+    /**
+     * Tableros generados que ya estaban en la memoria de visitados
+     */
+    long duplicados;
+
+    /**
+     * Máximo número de nodos pendientes (abiertos, cola o frontera) a la vez
+     */
+    long maxAbiertos;
+
+    /**
+     * Evaluaciones de la heurística, completas o incrementales
+     */
+    long evaluaciones;
+
+    /**
+     * Si la búsqueda paró por vencer su plazo o por cancelarse
+     */
+    boolean interrumpida;
+
+    private final long inicio = System.nanoTime();
+    private long nanos = -1;
+
+    /**
+     * Anota el tamaño actual de la lista de abiertos
+     */
+    final void abiertos(long tam) {
+        if (tam > this.maxAbiertos) this.maxAbiertos = tam;
+    }
+
+    /**
+     * Cierra las estadísticas guardando el tiempo transcurrido
+     *
+     * @param pasos resultado de la búsqueda
+     * @return el mismo resultado, para usarlo en el return de la búsqueda
+     */
+    final <T> T termina(T pasos) {
+        if (this.nanos < 0) this.nanos = System.nanoTime() - this.inicio;
+        return pasos;
+    }
+
+    /**
+     * Como termina, para las búsquedas que paran por el plazo
+     */
+    final <T> T interrumpe(T pasos) {
+        this.interrumpida = true;
+        return termina(pasos);
+    }
+
+    public long getExpandidos() {
+        return this.expandidos;
+    }
+
+    public long getGenerados() {
+        return this.generados;
+    }
+
+    public long getDuplicados() {
+        return this.duplicados;
+    }
+
+    public long getMaxAbiertos() {
+        return this.maxAbiertos;
+    }
+
+    public long getEvaluaciones() {
+        return this.evaluaciones;
+    }
+
+    public boolean isInterrumpida() {
+        return this.interrumpida;
+    }
+
+    /**
+     * Tiempo de la búsqueda en nanosegundos (hasta ahora si no ha terminado)
+     */
+    public long getNanos() {
+        return this.nanos >= 0 ? this.nanos : System.nanoTime() - this.inicio;
+    }
+
+    /**
+     * Nodos expandidos por segundo
+     */
+    public double getNodosPorSegundo() {
+        long nanos = getNanos();
+        return nanos == 0 ? 0 : this.expandidos * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "expandidos=" + this.expandidos + " generados=" + this.generados
+                + " duplicados=" + this.duplicados + " maxAbiertos=" + this.maxAbiertos
+                + " evaluaciones=" + this.evaluaciones + " ms=" + getNanos() / 1000000.
+                + " nodos/seg=" + Math.round(getNodosPorSegundo())
+                + (this.interrumpida ? " (interrumpida)" : "");
+    }
+}
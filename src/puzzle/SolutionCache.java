@@ -0,0 +1,107 @@
+package puzzle;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caché de soluciones compartida entre búsquedas, indexada por el tablero
+ * empaquetado (n <= 15) y con un número máximo de entradas: al llenarse se
+ * expulsa la usada hace más tiempo (LRU). Un tablero y su traspuesto se
+ * guardan en la misma entrada, bajo el menor de los dos, con los movimientos
+ * de ese tablero: al consultar por el otro se trasponen los movimientos.
+ * Los métodos están sincronizados para poder usarla desde varios hilos.
+ */
+public class SolutionCache {
+
+    private final Geometry geometria;
+    private final int capacidad;
+    private final LinkedHashMap<Long, byte[]> soluciones;
+    private long consultas;
+    private long aciertos;
+    private long expulsiones;
+
+    /**
+     * @param n         tamaño de los puzzles (8, 15)
+     * @param capacidad número máximo de soluciones guardadas
+     */
+    public SolutionCache(int n, int capacidad) {
+        if (n > NPuzzle.MAX_EMPAQUETADO)
+            throw new RuntimeException("La caché sólo admite tableros empaquetados");
+        this.geometria = Geometry.de(n);
+        this.capacidad = capacidad;
+        this.soluciones = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> mayor) {
+                if (size() <= SolutionCache.this.capacidad) return false;
+                expulsiones++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Busca la solución de un tablero
+     *
+     * @param puzzle tablero a buscar
+     * @return la lista de movimientos, o null si no está en la caché
+     */
+    public synchronized ArrayList<Integer> busca(NPuzzle puzzle) {
+        this.consultas++;
+        long tablero = puzzle.tablero, traspuesto = this.geometria.traspone(tablero);
+        boolean traspone = traspuesto < tablero;
+        byte[] movimientos = this.soluciones.get(traspone ? traspuesto : tablero);
+        if (movimientos == null) return null;
+        this.aciertos++;
+        ArrayList<Integer> pasos = new ArrayList<>(movimientos.length);
+        for (byte m : movimientos) pasos.add(traspone ? Geometry.traspone(m) : (int) m);
+        return pasos;
+    }
+
+    /**
+     * Guarda la solución de un tablero
+     *
+     * @param puzzle      tablero resuelto
+     * @param movimientos su solución
+     */
+    public synchronized void guarda(NPuzzle puzzle, ArrayList<Integer> movimientos) {
+        long tablero = puzzle.tablero, traspuesto = this.geometria.traspone(tablero);
+        boolean traspone = traspuesto < tablero;
+        byte[] guardados = new byte[movimientos.size()];
+        for (int i = 0; i < guardados.length; i++) {
+            int m = movimientos.get(i);
+            guardados[i] = (byte) (traspone ? Geometry.traspone(m) : m);
+        }
+        this.soluciones.put(traspone ? traspuesto : tablero, guardados);
+    }
+
+    public synchronized long getConsultas() {
+        return this.consultas;
+    }
+
+    public synchronized long getAciertos() {
+        return this.aciertos;
+    }
+
+    public synchronized long getExpulsiones() {
+        return this.expulsiones;
+    }
+
+    public synchronized int size() {
+        return this.soluciones.size();
+    }
+
+    /**
+     * Fracción de consultas que han encontrado la solución
+     */
+    public synchronized double getTasaAciertos() {
+        return this.consultas == 0 ? 0 : (double) this.aciertos / this.consultas;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Caché: " + this.consultas + " consultas, " + this.aciertos + " aciertos ("
+                + Math.round(getTasaAciertos() * 100) + "%), " + this.expulsiones + " expulsiones, "
+                + this.soluciones.size() + "/" + this.capacidad + " entradas";
+    }
+}
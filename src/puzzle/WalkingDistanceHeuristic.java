@@ -0,0 +1,132 @@
+package puzzle;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Walking distance (Takahashi). Para las filas se mira sólo cuántas fichas de
+ * cada fila objetivo hay en cada fila, y en qué fila está el hueco: el número
+ * mínimo de movimientos verticales para ordenar esa tabla se precalcula con una
+ * búsqueda en anchura. Lo mismo vale para las columnas con los movimientos
+ * horizontales, y la suma de las dos es admisible y casi siempre mayor que la
+ * distancia Manhattan. Sólo para tableros de ancho 4 como máximo.
+ *
+ * Cada tablero guarda en estadoHeuristica la posición en la tabla de sus
+ * códigos de filas (32 bits altos) y de columnas (32 bits bajos), para que la
+ * actualización tras un movimiento no tenga que recorrer el tablero.
+ */
+public class WalkingDistanceHeuristic implements Heuristic {
+
+    /**
+     * Bit en el que empieza la línea del hueco dentro del código de una tabla
+     */
+    private static final int BIT_HUECO = 48;
+
+    /**
+     * Distancias precalculadas de un ancho: códigos ordenados y su distancia
+     */
+    private static final class Tabla {
+        long[] codigos;
+        byte[] distancias;
+
+        int indice(long codigo) {
+            return Arrays.binarySearch(this.codigos, codigo);
+        }
+    }
+
+    private static final Tabla[] tablas = new Tabla[5];
+
+    @Override
+    public int evalua(NPuzzle puzzle) {
+        Tabla tabla = tabla(puzzle.geometria.ancho);
+        int filas = tabla.indice(codigo(puzzle, true)), columnas = tabla.indice(codigo(puzzle, false));
+        puzzle.estadoHeuristica = (long) filas << 32 | columnas;
+        return tabla.distancias[filas] + tabla.distancias[columnas];
+    }
+
+    @Override
+    public int actualiza(NPuzzle puzzle, int h, int ficha, int desde, int hasta) {
+        int ancho = puzzle.geometria.ancho;
+        Tabla tabla = tabla(ancho);
+        //un movimiento vertical sólo cambia la tabla de filas y uno horizontal
+        //la de columnas: la ficha movida pasa de la línea desde a la línea
+        //hasta, y el hueco al revés
+        boolean filas = Math.abs(desde - hasta) == ancho;
+        int lineaDesde = filas ? desde / ancho : desde % ancho,
+                lineaHasta = filas ? hasta / ancho : hasta % ancho,
+                objetivo = filas ? ficha / ancho : ficha % ancho;
+        int viejo = (int) (filas ? puzzle.estadoHeuristica >>> 32 : puzzle.estadoHeuristica);
+        long codigo = tabla.codigos[viejo] - (1L << (3 * (lineaDesde * ancho + objetivo)))
+                + (1L << (3 * (lineaHasta * ancho + objetivo)));
+        codigo = (codigo & ~(7L << BIT_HUECO)) | ((long) lineaDesde << BIT_HUECO);
+        int nuevo = tabla.indice(codigo);
+        puzzle.estadoHeuristica = filas ? (long) nuevo << 32 | (puzzle.estadoHeuristica & 0xFFFFFFFFL)
+                : (puzzle.estadoHeuristica & ~0xFFFFFFFFL) | nuevo;
+        return h - tabla.distancias[viejo] + tabla.distancias[nuevo];
+    }
+
+    /**
+     * Código de la tabla de filas (o columnas) de un tablero: 3 bits con el
+     * número de fichas de cada línea objetivo en cada línea, y la línea del hueco
+     */
+    private static long codigo(NPuzzle puzzle, boolean filas) {
+        int ancho = puzzle.geometria.ancho;
+        long codigo = 0;
+        for (int pos = 0; pos < puzzle.n + 1; pos++) {
+            int v = puzzle.casilla(pos);
+            int linea = filas ? pos / ancho : pos % ancho;
+            if (v == 0) codigo |= (long) linea << BIT_HUECO;
+            else codigo += 1L << (3 * (linea * ancho + (filas ? v / ancho : v % ancho)));
+        }
+        return codigo;
+    }
+
+    /**
+     * Tabla de un ancho, calculándola la primera vez. Filas y columnas usan la
+     * misma porque el objetivo es simétrico (el hueco en la casilla 0).
+     */
+    private static synchronized Tabla tabla(int ancho) {
+        if (ancho > 4)
+            throw new RuntimeException("Walking distance sólo para tableros de ancho <= 4");
+        if (tablas[ancho] != null) return tablas[ancho];
+
+        long inicial = 0;
+        for (int r = 0; r < ancho; r++)
+            inicial += (long) (r == 0 ? ancho - 1 : ancho) << (3 * (r * ancho + r));
+
+        HashMap<Long, Integer> distancias = new HashMap<>();
+        long[] cola = new long[1024];
+        int cabeza = 0, fin = 0;
+        cola[fin++] = inicial;
+        distancias.put(inicial, 0);
+        while (cabeza < fin) {
+            long codigo = cola[cabeza++];
+            int d = distancias.get(codigo);
+            int hueco = (int) (codigo >>> BIT_HUECO);
+            for (int otra = hueco - 1; otra <= hueco + 1; otra += 2) {
+                if (otra < 0 || otra >= ancho) continue;
+                //una ficha de la línea otra, de cualquier línea objetivo, pasa
+                //a la línea del hueco
+                for (int g = 0; g < ancho; g++) {
+                    int desp = 3 * (otra * ancho + g);
+                    if (((codigo >>> desp) & 7) == 0) continue;
+                    long nuevo = codigo - (1L << desp) + (1L << (3 * (hueco * ancho + g)));
+                    nuevo = (nuevo & ~(7L << BIT_HUECO)) | ((long) otra << BIT_HUECO);
+                    if (distancias.containsKey(nuevo)) continue;
+                    distancias.put(nuevo, d + 1);
+                    if (fin == cola.length) cola = Arrays.copyOf(cola, fin * 2);
+                    cola[fin++] = nuevo;
+                }
+            }
+        }
+
+        Tabla tabla = new Tabla();
+        tabla.codigos = Arrays.copyOf(cola, fin);
+        Arrays.sort(tabla.codigos);
+        tabla.distancias = new byte[fin];
+        for (int i = 0; i < fin; i++)
+            tabla.distancias[i] = (byte) (int) distancias.get(tabla.codigos[i]);
+        tablas[ancho] = tabla;
+        return tabla;
+    }
+}
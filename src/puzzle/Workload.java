@@ -0,0 +1,304 @@
+package puzzle;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Generador de conjuntos de puzzles reproducibles para pruebas de carga y de
+ * rendimiento: con la misma semilla salen siempre los mismos tableros, así que
+ * se pueden comparar distintas búsquedas sobre exactamente el mismo trabajo.
+ * Los tableros salen de paseos aleatorios de k pasos desde el objetivo o de
+ * permutaciones uniformes con solución, y se pueden repartir en estratos por
+ * distancia al objetivo, heurística (Manhattan) u óptima. La óptima se saca
+ * de la tabla completa en el 8-puzzle y de IDA* con conflicto lineal, cortada
+ * en la distancia máxima pedida, en los demás.
+ *
+ * Los conjuntos se escriben con un tablero por línea (el formato del modo por
+ * lotes) o, si la salida es un directorio, un fichero por tablero que se puede
+ * leer con NPuzzle(String fichero, int n).
+ *
+ * Uso: java puzzle.Workload salida 8/15/24 paseo pasos porEstrato dmin dmax [h|optima] [semilla]
+ *      java puzzle.Workload salida 8/15/24 uniforme porEstrato dmin dmax [h|optima] [semilla]
+ *      java puzzle.Workload directorio canonico
+ */
+public class Workload {
+
+    /**
+     * Semilla por defecto
+     */
+    static final long SEMILLA = 20161025L;
+
+    /**
+     * Semilla del conjunto canónico: no se debe cambiar nunca
+     */
+    static final long SEMILLA_CANONICA = 100L;
+
+    /**
+     * Candidatos que se prueban, como mucho, por cada tablero pedido
+     */
+    static final int INTENTOS = 1000;
+
+    private final int n;
+    private final Random aleatorio;
+    private final boolean optima;
+    private DistanceOracle oraculo;
+
+    /**
+     * @param n       tamaño de los puzzles (8, 15, 24)
+     * @param semilla semilla del generador
+     * @param optima  si los estratos van por distancia óptima en lugar de por
+     *                la heurística Manhattan
+     */
+    public Workload(int n, long semilla, boolean optima) {
+        this.n = n;
+        this.aleatorio = new Random(semilla);
+        this.optima = optima;
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 2 && args[1].equals("canonico")) {
+            canonico(new File(args[0]));
+            return;
+        }
+        if (args.length < 6) {
+            System.out.println("Workload <salida> 8/15/24 paseo <pasos> <por estrato> <dmin> <dmax> [h|optima] [semilla]");
+            System.out.println("Workload <salida> 8/15/24 uniforme <por estrato> <dmin> <dmax> [h|optima] [semilla]");
+            System.out.println("Workload <directorio> canonico");
+            return;
+        }
+        int n = Integer.valueOf(args[1]);
+        boolean paseo = args[2].equals("paseo");
+        int i = paseo ? 4 : 3;
+        int pasos = paseo ? Integer.valueOf(args[3]) : 0;
+        int porEstrato = Integer.valueOf(args[i]);
+        int dmin = Integer.valueOf(args[i + 1]);
+        int dmax = Integer.valueOf(args[i + 2]);
+        boolean optima = args.length > i + 3 && args[i + 3].equals("optima");
+        long semilla = args.length > i + 4 ? Long.valueOf(args[i + 4]) : SEMILLA;
+
+        Workload generador = new Workload(n, semilla, optima);
+        ArrayList<int[]> tableros = generador.estratificado(pasos, porEstrato, dmin, dmax);
+        escribe(tableros, new File(args[0]));
+        System.out.println(tableros.size() + " puzzles escritos en " + args[0]);
+    }
+
+    /*---------------------------------------------------------------------------*/
+
+    /**
+     * Tablero al que se llega con un paseo aleatorio desde el objetivo, sin
+     * deshacer nunca el último movimiento
+     *
+     * @param pasos longitud del paseo
+     * @return contenido de las n+1 casillas
+     */
+    public int[] paseo(int pasos) {
+        return casillas(paseo(this.n, pasos, this.aleatorio));
+    }
+
+    /**
+     * Tablero uniforme entre todos los que tienen solución
+     *
+     * @return contenido de las n+1 casillas
+     */
+    public int[] uniforme() {
+        return NPuzzle.permutacionResoluble(this.n, this.aleatorio);
+    }
+
+    /**
+     * Tableros distintos sin estratificar
+     *
+     * @param pasos    longitud de los paseos, 0 para tableros uniformes
+     * @param cantidad número de tableros
+     * @return los tableros, en el orden en que se han generado
+     */
+    public ArrayList<int[]> genera(int pasos, int cantidad) {
+        ArrayList<int[]> tableros = new ArrayList<>(cantidad);
+        HashSet<String> vistos = new HashSet<>();
+        for (long intento = 0; tableros.size() < cantidad && intento < (long) INTENTOS * cantidad; intento++) {
+            int[] casillas = pasos > 0 ? paseo(pasos) : uniforme();
+            if (vistos.add(Arrays.toString(casillas))) tableros.add(casillas);
+        }
+        return tableros;
+    }
+
+    /**
+     * Tableros distintos repartidos por distancia: porEstrato tableros de cada
+     * distancia entre dmin y dmax. Se generan candidatos hasta llenar todos
+     * los estratos o agotar los intentos (hay distancias con muy pocos
+     * tableros o ninguno, por ejemplo las de paridad contraria a la del paseo).
+     *
+     * @param pasos      longitud de los paseos, 0 para tableros uniformes
+     * @param porEstrato tableros de cada distancia
+     * @param dmin       distancia mínima
+     * @param dmax       distancia máxima
+     * @return los tableros, ordenados por distancia
+     */
+    public ArrayList<int[]> estratificado(int pasos, int porEstrato, int dmin, int dmax) {
+        int estratos = dmax - dmin + 1;
+        ArrayList<ArrayList<int[]>> porDistancia = new ArrayList<>(estratos);
+        for (int d = 0; d < estratos; d++) porDistancia.add(new ArrayList<>());
+        HashSet<String> vistos = new HashSet<>();
+        int faltan = estratos * porEstrato;
+        long intentos = (long) INTENTOS * faltan;
+
+        for (long intento = 0; faltan > 0 && intento < intentos; intento++) {
+            int[] casillas = pasos > 0 ? paseo(pasos) : uniforme();
+            int d = distancia(casillas, dmax);
+            if (d < dmin || d > dmax) continue;
+            ArrayList<int[]> estrato = porDistancia.get(d - dmin);
+            if (estrato.size() == porEstrato || !vistos.add(Arrays.toString(casillas))) continue;
+            estrato.add(casillas);
+            faltan--;
+        }
+
+        ArrayList<int[]> tableros = new ArrayList<>();
+        for (int d = 0; d < estratos; d++) {
+            if (porDistancia.get(d).size() < porEstrato)
+                System.out.println("Distancia " + (dmin + d) + ": sólo " + porDistancia.get(d).size()
+                        + " de " + porEstrato + " tableros");
+            tableros.addAll(porDistancia.get(d));
+        }
+        return tableros;
+    }
+
+    /**
+     * Distancia de un tablero al objetivo, heurística u óptima según el
+     * generador
+     *
+     * @param casillas contenido del tablero
+     * @param cota     distancia a partir de la cual no hace falta el valor exacto
+     * @return la distancia, o cota+1 si la óptima es mayor que la cota
+     */
+    int distancia(int[] casillas, int cota) {
+        NPuzzle puzzle = new NPuzzle(this.n, casillas);
+        if (!this.optima) return puzzle.h;
+        if (this.n == 8) {
+            if (this.oraculo == null) this.oraculo = DistanceOracle.enMemoria();
+            return this.oraculo.distancia(puzzle.tablero);
+        }
+        //IDA* hasta la cota: si no hay plan tan corto no hace falta seguir
+        puzzle.usaHeuristica(Heuristic.CONFLICTO_LINEAL);
+        NPuzzle.ContextoIDA contexto = new NPuzzle.ContextoIDA();
+        contexto.plazo = Deadline.sinLimite();
+        contexto.camino = new int[cota + 1];
+        int umbral = puzzle.h;
+        while (umbral <= cota) {
+            int t = puzzle.dfsIDA(0, umbral, 0, contexto);
+            if (t == NPuzzle.ENCONTRADO) return contexto.longitud;
+            umbral = t;
+        }
+        return cota + 1;
+    }
+
+    /*---------------------------------------------------------------------------*/
+
+    /**
+     * Conjunto canónico de puzzles difíciles, siempre el mismo:
+     * - canonico8.txt: 100 tableros del 8-puzzle, 25 de cada distancia óptima
+     * entre 27 y 30 (sólo hay dos tableros a distancia 31, la máxima).
+     * - canonico15.txt: 100 tableros uniformes del 15-puzzle.
+     * - canonico24.txt: 50 tableros uniformes del 24-puzzle.
+     * Los de 15 y 24 se generan igual que los conjuntos de prueba habituales
+     * en la literatura (permutaciones uniformes con solución), pero con
+     * nuestra semilla: no son esos conjuntos.
+     *
+     * @param directorio donde se escriben los tres ficheros
+     */
+    public static void canonico(File directorio) {
+        directorio.mkdirs();
+        Workload ocho = new Workload(8, SEMILLA_CANONICA, true);
+        escribe(ocho.estratificado(0, 25, 27, 30), new File(directorio, "canonico8.txt"));
+        Workload quince = new Workload(15, SEMILLA_CANONICA, false);
+        escribe(quince.genera(0, 100), new File(directorio, "canonico15.txt"));
+        Workload veinticuatro = new Workload(24, SEMILLA_CANONICA, false);
+        escribe(veinticuatro.genera(0, 50), new File(directorio, "canonico24.txt"));
+    }
+
+    /**
+     * Escribe un conjunto de tableros, uno por línea o, si la salida es un
+     * directorio, uno por fichero (puzzle_0000.txt...)
+     *
+     * @param tableros los tableros
+     * @param salida   fichero o directorio de salida
+     */
+    public static void escribe(List<int[]> tableros, File salida) {
+        try {
+            if (!salida.isDirectory()) {
+                try (PrintWriter out = new PrintWriter(new FileWriter(salida))) {
+                    for (int[] casillas : tableros) out.println(linea(casillas));
+                }
+                return;
+            }
+            for (int i = 0; i < tableros.size(); i++) {
+                File f = new File(salida, String.format("puzzle_%04d.txt", i));
+                try (PrintWriter out = new PrintWriter(new FileWriter(f))) {
+                    out.println(linea(tableros.get(i)));
+                }
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(Workload.class.getName()).log(Level.SEVERE, "Fallo escribiendo " + salida, ex);
+        }
+    }
+
+    private static String linea(int[] casillas) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < casillas.length; i++)
+            sb.append(i > 0 ? " " : "").append(casillas[i]);
+        return sb.toString();
+    }
+
+    /*---------------------------------------------------------------------------*/
+
+    /**
+     * Tableros de paseos aleatorios con semilla, como NPuzzle con g=0 y sin
+     * padre
+     *
+     * @param n        tamaño del problema
+     * @param cantidad número de puzzles
+     * @param pasos    longitud de cada paseo
+     * @param semilla  semilla del generador
+     * @return los puzzles
+     */
+    static NPuzzle[] paseos(int n, int cantidad, int pasos, long semilla) {
+        Random aleatorio = new Random(semilla);
+        NPuzzle[] puzzles = new NPuzzle[cantidad];
+        for (int k = 0; k < cantidad; k++)
+            puzzles[k] = new NPuzzle(n, casillas(paseo(n, pasos, aleatorio)));
+        return puzzles;
+    }
+
+    /**
+     * Paseo aleatorio desde el objetivo sin deshacer el último movimiento
+     */
+    private static NPuzzle paseo(int n, int pasos, Random aleatorio) {
+        int[] objetivo = new int[n + 1];
+        for (int i = 0; i <= n; i++) objetivo[i] = i;
+        NPuzzle p = new NPuzzle(n, objetivo);
+        int[] candidatos = new int[4];
+        int anterior = 0;
+        for (int paso = 0; paso < pasos; paso++) {
+            int tam = 0;
+            for (int movimiento : p.movimientosPosibles())
+                if (movimiento != anterior) candidatos[tam++] = movimiento;
+            int movimiento = candidatos[aleatorio.nextInt(tam)];
+            p.mueveInseguro(movimiento);
+            anterior = p.inverso(movimiento);
+        }
+        return p;
+    }
+
+    static int[] casillas(NPuzzle p) {
+        int[] casillas = new int[p.n + 1];
+        for (int i = 0; i <= p.n; i++) casillas[i] = p.casilla(i);
+        return casillas;
+    }
+}
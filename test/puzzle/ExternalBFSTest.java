@@ -0,0 +1,43 @@
+package puzzle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * La búsqueda en disco debe dar los mismos niveles con bloques pequeños, que
+ * obligan a mezclar en varias pasadas, que con un solo bloque por nivel.
+ */
+public class ExternalBFSTest {
+
+    private static long[] niveles(int bloque) throws IOException {
+        File directorio = Files.createTempDirectory("externa").toFile();
+        try {
+            long[] histograma = new ExternalBFS(8, directorio, bloque).ejecuta(Integer.MAX_VALUE);
+            //sólo quedan los ficheros de los niveles
+            assertEquals(histograma.length + 1, directorio.listFiles().length);
+            return histograma;
+        } finally {
+            for (File f : directorio.listFiles()) f.delete();
+            directorio.delete();
+        }
+    }
+
+    @Test
+    public void mezclaEnVariasPasadas() throws IOException {
+        long[] unaPasada = niveles(1 << 20);
+        //el nivel más grande del 8-puzzle da más de cien bloques de 300 tableros
+        long[] variasPasadas = niveles(300);
+        assertArrayEquals(unaPasada, variasPasadas);
+
+        //profundidad máxima 31 y la mitad de las permutaciones de 9 casillas
+        assertEquals(32, unaPasada.length);
+        long total = 0;
+        for (long tableros : unaPasada) total += tableros;
+        assertEquals(181440, total);
+    }
+}
@@ -0,0 +1,67 @@
+package puzzle;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * La actualización incremental de cada heurística debe dar siempre lo mismo
+ * que el cálculo completo, a lo largo de paseos aleatorios.
+ */
+public class HeuristicTest {
+
+    private static final int PASOS = 20000;
+
+    /**
+     * Da un paseo aleatorio comparando en cada paso el valor incremental con
+     * el completo
+     */
+    private static void compruebaIncremental(Heuristic heuristica, int n) {
+        Random aleatorio = new Random(n);
+        NPuzzle tablero = NPuzzle.aleatorioResoluble(n, aleatorio);
+        tablero.usaHeuristica(heuristica);
+        for (int i = 0; i < PASOS; i++) {
+            int[] movimientos = tablero.movimientosPosibles();
+            int movimiento = movimientos[aleatorio.nextInt(movimientos.length)];
+            //alterna entre mover el tablero y mover una copia
+            if ((i & 1) == 0) tablero.mueve(movimiento);
+            else tablero = tablero.copiaYMueve(movimiento);
+            //sobre una copia, para no tocar lo que el tablero guarda de la heurística
+            assertEquals(heuristica + " n=" + n + " paso " + i, heuristica.evalua(new NPuzzle(tablero)), tablero.h);
+        }
+    }
+
+    @Test
+    public void manhattan() {
+        for (int n : new int[]{8, 15, 24, 35}) compruebaIncremental(Heuristic.MANHATTAN, n);
+    }
+
+    @Test
+    public void hamming() {
+        for (int n : new int[]{8, 15, 24}) compruebaIncremental(Heuristic.HAMMING, n);
+    }
+
+    @Test
+    public void conflictoLineal() {
+        for (int n : new int[]{8, 15, 24}) compruebaIncremental(Heuristic.CONFLICTO_LINEAL, n);
+    }
+
+    @Test
+    public void walkingDistance() {
+        for (int n : new int[]{8, 15}) compruebaIncremental(Heuristic.WALKING_DISTANCE, n);
+    }
+
+    @Test
+    public void patrones() throws IOException {
+        File fichero = File.createTempFile("pdb15", ".bin");
+        try {
+            int[][] grupos = {{1, 2, 3}, {4, 5, 6}, {7, 8, 9}, {10, 11, 12}, {13, 14, 15}};
+            compruebaIncremental(PatternDatabase.carga(15, grupos, fichero.getPath()), 15);
+        } finally {
+            fichero.delete();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package puzzle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * El tablero a un movimiento del objetivo llega con padre distinto de 0 (el
+ * movimiento que lo deshace es justo la solución). Ninguna búsqueda debe
+ * prohibir ese movimiento en la raíz.
+ */
+public class OneMoveFromGoalTest {
+
+    private static final ArrayList<Integer> UN_PASO = new ArrayList<>(Arrays.asList(NPuzzle.IZQUIERDA));
+
+    /**
+     * Objetivo del 8-puzzle con el hueco movido a la derecha
+     */
+    private static NPuzzle tablero() {
+        NPuzzle objetivo = new NPuzzle(8, new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8});
+        NPuzzle tablero = objetivo.copiaYMueve(NPuzzle.DERECHA);
+        assertEquals(NPuzzle.IZQUIERDA, tablero.padre);
+        return tablero;
+    }
+
+    /**
+     * Si el plan lleva del tablero al objetivo sin pasar dos veces por el
+     * mismo tablero
+     */
+    static boolean resuelveSinCiclos(NPuzzle tablero, ArrayList<Integer> plan) {
+        NPuzzle copia = new NPuzzle(tablero);
+        HashSet<NPuzzle> vistos = new HashSet<>();
+        vistos.add(new NPuzzle(copia));
+        for (int movimiento : plan)
+            if (!copia.mueve(movimiento) || !vistos.add(new NPuzzle(copia))) return false;
+        return copia.objetivo();
+    }
+
+    @Test
+    public void aEstrella() {
+        assertEquals(UN_PASO, tablero().busquedaPrimeroMejorA());
+    }
+
+    @Test
+    public void ida() {
+        assertEquals(UN_PASO, tablero().busquedaIDA());
+    }
+
+    @Test
+    public void idaParalela() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            assertEquals(UN_PASO, tablero().busquedaIDAParalela(pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void acotada() {
+        assertEquals(UN_PASO, tablero().busquedaPrimeroMejorAcotada(1000));
+    }
+
+    @Test
+    public void anytime() {
+        assertEquals(UN_PASO, tablero().busquedaPrimeroMejorAnytime(null));
+    }
+
+    @Test
+    public void haz() {
+        assertEquals(UN_PASO, tablero().escaladaSimple());
+        assertEquals(UN_PASO, tablero().busquedaHaz(4));
+    }
+
+    @Test
+    public void anchuraYBidireccional() {
+        assertEquals(UN_PASO, tablero().busquedaPrimeroAnchura());
+        assertEquals(UN_PASO, tablero().busquedaBidireccional());
+    }
+
+    @Test
+    public void aleatorias() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            NPuzzle tablero = tablero();
+            tablero.usaPlazo(Deadline.en(10000));
+            assertTrue(resuelveSinCiclos(tablero, tablero.busquedaAleatoria(pool, new SplittableRandom(1))));
+            assertTrue(resuelveSinCiclos(tablero, tablero.busquedaAleatoriaMejorada(pool, new SplittableRandom(1))));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
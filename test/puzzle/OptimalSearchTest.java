@@ -0,0 +1,128 @@
+package puzzle;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Las búsquedas óptimas deben dar planes válidos de la longitud que da la
+ * tabla completa de distancias del 8-puzzle, en tableros aleatorios.
+ */
+public class OptimalSearchTest {
+
+    private static final int TABLEROS = 20;
+
+    private static DistanceOracle oraculo;
+
+    @BeforeClass
+    public static void calculaOraculo() {
+        oraculo = DistanceOracle.enMemoria();
+    }
+
+    /**
+     * Comprueba una búsqueda en los mismos tableros aleatorios
+     */
+    private static void compruebaOptima(String nombre, Function<NPuzzle, ArrayList<Integer>> busqueda) {
+        Random aleatorio = new Random(8);
+        for (int i = 0; i < TABLEROS; i++) {
+            NPuzzle tablero = NPuzzle.aleatorioResoluble(8, aleatorio);
+            ArrayList<Integer> plan = busqueda.apply(new NPuzzle(tablero));
+            assertEquals(nombre + " en " + tablero, oraculo.distancia(tablero.tablero), plan.size());
+            assertTrue(nombre + " no resuelve " + tablero, resuelve(tablero, plan));
+        }
+    }
+
+    static boolean resuelve(NPuzzle tablero, ArrayList<Integer> plan) {
+        NPuzzle copia = new NPuzzle(tablero);
+        for (int movimiento : plan)
+            if (!copia.mueve(movimiento)) return false;
+        return copia.objetivo();
+    }
+
+    @Test
+    public void oraculo() {
+        compruebaOptima("oráculo", tablero -> oraculo.solucion(tablero.tablero));
+    }
+
+    @Test
+    public void aEstrella() {
+        compruebaOptima("A*", NPuzzle::busquedaPrimeroMejorA);
+    }
+
+    @Test
+    public void ida() {
+        compruebaOptima("IDA*", NPuzzle::busquedaIDA);
+    }
+
+    @Test
+    public void idaConOtrasHeuristicas() {
+        compruebaOptima("IDA* conflicto lineal", tablero -> {
+            tablero.usaHeuristica(Heuristic.CONFLICTO_LINEAL);
+            return tablero.busquedaIDA();
+        });
+        compruebaOptima("IDA* walking distance", tablero -> {
+            tablero.usaHeuristica(Heuristic.WALKING_DISTANCE);
+            return tablero.busquedaIDA();
+        });
+    }
+
+    @Test
+    public void idaConPatrones() throws IOException {
+        File fichero = File.createTempFile("pdb8", ".bin");
+        try {
+            PatternDatabase patrones = PatternDatabase.carga(8, new int[][]{{1, 2, 3, 4}, {5, 6, 7, 8}},
+                    fichero.getPath());
+            compruebaOptima("IDA* patrones", tablero -> {
+                tablero.usaHeuristica(patrones);
+                return tablero.busquedaIDA();
+            });
+        } finally {
+            fichero.delete();
+        }
+    }
+
+    @Test
+    public void idaParalela() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            compruebaOptima("IDA* paralelo", tablero -> tablero.busquedaIDAParalela(pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void anchura() {
+        compruebaOptima("anchura", NPuzzle::busquedaPrimeroAnchura);
+    }
+
+    @Test
+    public void bidireccional() {
+        compruebaOptima("bidireccional", NPuzzle::busquedaBidireccional);
+        compruebaOptima("bidireccional Hamming", tablero -> {
+            tablero.usaHeuristica(Heuristic.HAMMING);
+            return tablero.busquedaBidireccional();
+        });
+    }
+
+    @Test
+    public void acotada() {
+        //con memoria de sobra y con poca, que obliga a olvidar nodos
+        compruebaOptima("SMA* holgada", tablero -> tablero.busquedaPrimeroMejorAcotada(200000));
+        compruebaOptima("SMA* justa", tablero -> tablero.busquedaPrimeroMejorAcotada(2000));
+    }
+
+    @Test
+    public void anytime() {
+        //el último plan, el que se devuelve, es el óptimo
+        compruebaOptima("anytime", tablero -> tablero.busquedaPrimeroMejorAnytime(null));
+    }
+}
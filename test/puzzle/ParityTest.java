@@ -0,0 +1,129 @@
+package puzzle;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * La comprobación de paridad por ciclos debe coincidir con la fuerza bruta:
+ * un tablero tiene solución si y sólo si se alcanza desde el objetivo.
+ */
+public class ParityTest {
+
+    /**
+     * Todos los tableros del 3-puzzle y del 8-puzzle: los alcanzables desde el
+     * objetivo con una búsqueda en anchura completa, y el resto no
+     */
+    @Test
+    public void todosLosTablerosPequenos() {
+        for (int n : new int[]{3, 8}) {
+            HashSet<NPuzzle> alcanzables = alcanzables(n);
+            int[] casillas = new int[n + 1];
+            for (int i = 0; i <= n; i++) casillas[i] = i;
+            int resolubles = 0;
+            do {
+                NPuzzle tablero = new NPuzzle(n, casillas);
+                boolean esperado = alcanzables.contains(tablero);
+                assertEquals("n=" + n + " " + tablero, esperado, tablero.resoluble());
+                assertEquals("n=" + n + " " + tablero, esperado, NPuzzle.resoluble(casillas, tablero.geometria.ancho));
+                if (esperado) resolubles++;
+            } while (siguientePermutacion(casillas));
+            //justo la mitad de las permutaciones
+            assertEquals(alcanzables.size(), resolubles);
+            assertEquals(factorial(n + 1) / 2, resolubles);
+        }
+    }
+
+    /**
+     * En tableros más grandes, contra la regla clásica de las inversiones
+     */
+    @Test
+    public void inversiones() {
+        Random aleatorio = new Random(15);
+        for (int n : new int[]{15, 24, 35}) {
+            int ancho = (int) Math.sqrt(n + 1);
+            for (int k = 0; k < 2000; k++) {
+                int[] casillas = permutacion(n + 1, aleatorio);
+                assertEquals(resolublePorInversiones(casillas, ancho), NPuzzle.resoluble(casillas, ancho));
+                assertTrue(NPuzzle.resoluble(NPuzzle.permutacionResoluble(n, aleatorio), ancho));
+            }
+        }
+    }
+
+    private static HashSet<NPuzzle> alcanzables(int n) {
+        int[] objetivo = new int[n + 1];
+        for (int i = 0; i <= n; i++) objetivo[i] = i;
+        HashSet<NPuzzle> vistos = new HashSet<>();
+        ArrayDeque<NPuzzle> abiertos = new ArrayDeque<>();
+        NPuzzle inicial = new NPuzzle(n, objetivo);
+        vistos.add(inicial);
+        abiertos.add(inicial);
+        while (!abiertos.isEmpty()) {
+            NPuzzle actual = abiertos.poll();
+            for (int movimiento : actual.movimientosPosibles()) {
+                NPuzzle hijo = actual.copiaYMueve(movimiento);
+                if (vistos.add(hijo)) abiertos.add(hijo);
+            }
+        }
+        return vistos;
+    }
+
+    /**
+     * Regla de las inversiones: en anchos impares las inversiones de las
+     * fichas deben ser pares; en anchos pares, su suma con la fila del hueco
+     * debe tener la paridad de la fila del hueco en el objetivo (la 0)
+     */
+    private static boolean resolublePorInversiones(int[] casillas, int ancho) {
+        int inversiones = 0, hueco = 0;
+        for (int i = 0; i < casillas.length; i++) {
+            if (casillas[i] == 0) {
+                hueco = i;
+                continue;
+            }
+            for (int j = i + 1; j < casillas.length; j++)
+                if (casillas[j] != 0 && casillas[j] < casillas[i]) inversiones++;
+        }
+        if ((ancho & 1) == 1) return (inversiones & 1) == 0;
+        return ((inversiones + hueco / ancho) & 1) == 0;
+    }
+
+    /**
+     * Permutación uniforme de 0..tam-1, tenga solución o no
+     */
+    private static int[] permutacion(int tam, Random aleatorio) {
+        int[] casillas = new int[tam];
+        for (int i = 0; i < tam; i++) casillas[i] = i;
+        for (int i = tam - 1; i > 0; i--) {
+            int j = aleatorio.nextInt(i + 1);
+            int aux = casillas[i];
+            casillas[i] = casillas[j];
+            casillas[j] = aux;
+        }
+        return casillas;
+    }
+
+    private static boolean siguientePermutacion(int[] a) {
+        int i = a.length - 2;
+        while (i >= 0 && a[i] >= a[i + 1]) i--;
+        if (i < 0) return false;
+        int j = a.length - 1;
+        while (a[j] <= a[i]) j--;
+        int aux = a[i];
+        a[i] = a[j];
+        a[j] = aux;
+        for (int k = i + 1, l = a.length - 1; k < l; k++, l--) {
+            aux = a[k];
+            a[k] = a[l];
+            a[l] = aux;
+        }
+        return true;
+    }
+
+    private static long factorial(int k) {
+        return k <= 1 ? 1 : k * factorial(k - 1);
+    }
+}
@@ -0,0 +1,80 @@
+package puzzle;
+
+import java.util.ArrayList;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Un tablero y su traspuesto comparten entrada en la caché, y la solución
+ * que se devuelve para cada uno debe resolver ese tablero.
+ */
+public class SolutionCacheTest {
+
+    /**
+     * Tablero traspuesto, construido desde el tablero empaquetado traspuesto
+     */
+    private static NPuzzle traspuesto(NPuzzle tablero) {
+        long empaquetado = tablero.geometria.traspone(tablero.tablero);
+        int[] casillas = new int[tablero.n + 1];
+        for (int i = 0; i <= tablero.n; i++) casillas[i] = (int) (empaquetado >>> (i << 2)) & 0xF;
+        return new NPuzzle(tablero.n, casillas);
+    }
+
+    @Test
+    public void traspuestoComparteEntrada() {
+        for (int n : new int[]{8, 15}) {
+            Random aleatorio = new Random(n);
+            SolutionCache cache = new SolutionCache(n, 100);
+            for (int i = 0; i < 20; i++) {
+                NPuzzle tablero = Workload.paseos(n, 1, 30, aleatorio.nextLong())[0];
+                NPuzzle otro = traspuesto(tablero);
+                assertTrue(otro.resoluble());
+                ArrayList<Integer> plan = new NPuzzle(tablero).busquedaIDA();
+                cache.guarda(tablero, plan);
+
+                ArrayList<Integer> suyo = cache.busca(tablero);
+                ArrayList<Integer> delOtro = cache.busca(otro);
+                assertEquals(plan, suyo);
+                assertNotNull(delOtro);
+                assertEquals(plan.size(), delOtro.size());
+                assertTrue(OptimalSearchTest.resuelve(otro, delOtro));
+            }
+            //cada pareja ocupa una sola entrada (o ninguna más, si es simétrico)
+            assertTrue(cache.size() <= 20);
+            assertEquals(40, cache.getAciertos());
+        }
+    }
+
+    @Test
+    public void guardarElTraspuestoNoDuplica() {
+        NPuzzle tablero = Workload.paseos(8, 1, 20, 1)[0];
+        NPuzzle otro = traspuesto(tablero);
+        SolutionCache cache = new SolutionCache(8, 10);
+        cache.guarda(tablero, new NPuzzle(tablero).busquedaIDA());
+        cache.guarda(otro, new NPuzzle(otro).busquedaIDA());
+        assertEquals(1, cache.size());
+        assertTrue(OptimalSearchTest.resuelve(tablero, cache.busca(tablero)));
+        assertTrue(OptimalSearchTest.resuelve(otro, cache.busca(otro)));
+    }
+
+    @Test
+    public void expulsaElMenosUsado() {
+        NPuzzle[] tableros = Workload.paseos(8, 3, 20, 2);
+        SolutionCache cache = new SolutionCache(8, 2);
+        cache.guarda(tableros[0], new NPuzzle(tableros[0]).busquedaIDA());
+        cache.guarda(tableros[1], new NPuzzle(tableros[1]).busquedaIDA());
+        //al consultar el primero, el menos usado pasa a ser el segundo
+        assertNotNull(cache.busca(tableros[0]));
+        cache.guarda(tableros[2], new NPuzzle(tableros[2]).busquedaIDA());
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getExpulsiones());
+        assertNotNull(cache.busca(tableros[0]));
+        assertNull(cache.busca(tableros[1]));
+        assertNotNull(cache.busca(tableros[2]));
+    }
+}
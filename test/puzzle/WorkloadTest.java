@@ -0,0 +1,75 @@
+package puzzle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Con la misma semilla el generador debe dar siempre los mismos tableros, y
+ * los estratos deben tener las distancias pedidas.
+ */
+public class WorkloadTest {
+
+    private static boolean iguales(ArrayList<int[]> a, ArrayList<int[]> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++)
+            if (!Arrays.equals(a.get(i), b.get(i))) return false;
+        return true;
+    }
+
+    @Test
+    public void mismaSemillaMismosTableros() {
+        for (int n : new int[]{8, 15, 24}) {
+            assertTrue(iguales(new Workload(n, 7, false).genera(0, 50), new Workload(n, 7, false).genera(0, 50)));
+            assertTrue(iguales(new Workload(n, 7, false).genera(40, 50), new Workload(n, 7, false).genera(40, 50)));
+            assertFalse(iguales(new Workload(n, 7, false).genera(0, 50), new Workload(n, 8, false).genera(0, 50)));
+        }
+        assertTrue(iguales(new Workload(15, 7, false).estratificado(60, 5, 20, 30),
+                new Workload(15, 7, false).estratificado(60, 5, 20, 30)));
+    }
+
+    @Test
+    public void estratosPorDistanciaOptima() {
+        DistanceOracle oraculo = DistanceOracle.enMemoria();
+        ArrayList<int[]> tableros = new Workload(8, 3, true).estratificado(0, 10, 20, 25);
+        assertEquals(60, tableros.size());
+        for (int i = 0; i < tableros.size(); i++) {
+            int[] casillas = tableros.get(i);
+            assertTrue(NPuzzle.resoluble(casillas, 3));
+            //ordenados por distancia, diez de cada una
+            assertEquals(20 + i / 10, oraculo.distancia(new NPuzzle(8, casillas).tablero));
+        }
+    }
+
+    @Test
+    public void estratosPorHeuristica() {
+        ArrayList<int[]> tableros = new Workload(15, 3, false).estratificado(0, 5, 30, 35);
+        assertEquals(30, tableros.size());
+        for (int i = 0; i < tableros.size(); i++)
+            assertEquals(30 + i / 5, new NPuzzle(15, tableros.get(i)).h);
+    }
+
+    /**
+     * El conjunto canónico se regenera igual que el de casos/
+     */
+    @Test
+    public void conjuntoCanonico() throws IOException {
+        File directorio = Files.createTempDirectory("canonico").toFile();
+        try {
+            Workload.canonico(directorio);
+            for (String fichero : new String[]{"canonico8.txt", "canonico15.txt", "canonico24.txt"})
+                assertEquals(fichero, Files.readAllLines(new File("casos", fichero).toPath()),
+                        Files.readAllLines(new File(directorio, fichero).toPath()));
+        } finally {
+            for (File f : directorio.listFiles()) f.delete();
+            directorio.delete();
+        }
+    }
+}